@@ -0,0 +1,318 @@
+package Adapter_Design_Pattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Asynchronous counterpart of Target: the returned future completes once the request is done
+interface AsyncTarget {
+    CompletableFuture<Void> requestAsync();
+}
+
+// Bulk operation the batching adapter forwards each group of requests to
+interface BulkAdaptee {
+    // Handles count requests in one call
+    void specificRequests(int count);
+}
+
+// Slow legacy API behind one connection: every call, single or bulk, costs one round trip
+class LegacyAdaptee extends Adaptee implements BulkAdaptee {
+    private final long roundTripMillis;
+    private final LongAdder roundTrips = new LongAdder();
+
+    public LegacyAdaptee(long roundTripMillis) {
+        this.roundTripMillis = roundTripMillis;
+    }
+
+    @Override
+    public synchronized void specificRequest() {
+        roundTrip();
+    }
+
+    // Handles count requests in a single round trip
+    @Override
+    public synchronized void specificRequests(int count) {
+        roundTrip();
+    }
+
+    public long roundTrips() {
+        return roundTrips.sum();
+    }
+
+    private void roundTrip() {
+        roundTrips.increment();
+        try {
+            Thread.sleep(roundTripMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during round trip", e);
+        }
+    }
+}
+
+// Adapter that collects requests for up to windowMillis, or until maxBatch are waiting, and
+// forwards each group as one bulk call to the adaptee. request() blocks until its group has
+// been handled; requestAsync() returns at once with a future. Futures are completed on the
+// completion executor, not the bulk thread, so slow callbacks do not hold up later groups and
+// a callback may call request() itself. close() sends the open group right away, and
+// requests made after close() fail with IllegalStateException.
+class BatchingAdapter implements Target, AsyncTarget, AutoCloseable {
+    private static final class Batch {
+        final List<CompletableFuture<Void>> requests = new ArrayList<>();
+    }
+
+    private final BulkAdaptee adaptee;
+    private final long windowMillis;
+    private final int maxBatch;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService bulkExecutor;
+    private final Executor completionExecutor;
+    private final LongAdder bulkCalls = new LongAdder();
+    // Both guarded by this; batches are handed to bulkExecutor under the same lock, so none
+    // can be submitted after close() has shut it down
+    private Batch current;
+    private boolean closed;
+
+    public BatchingAdapter(BulkAdaptee adaptee, long windowMillis, int maxBatch) {
+        this(adaptee, windowMillis, maxBatch, ForkJoinPool.commonPool());
+    }
+
+    public BatchingAdapter(BulkAdaptee adaptee, long windowMillis, int maxBatch, Executor completionExecutor) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("windowMillis must not be negative: " + windowMillis);
+        }
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be positive: " + maxBatch);
+        }
+        this.adaptee = adaptee;
+        this.windowMillis = windowMillis;
+        this.maxBatch = maxBatch;
+        this.completionExecutor = completionExecutor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon("batching-adapter-timer"));
+        this.bulkExecutor = Executors.newSingleThreadExecutor(daemon("batching-adapter-bulk"));
+    }
+
+    @Override
+    public void request() {
+        try {
+            requestAsync().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> requestAsync() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Adapter is closed"));
+            }
+            if (current == null) {
+                Batch batch = new Batch();
+                current = batch;
+                scheduler.schedule(() -> flush(batch), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            current.requests.add(future);
+            if (current.requests.size() >= maxBatch) {
+                dispatch(current);
+                current = null;
+            }
+        }
+        return future;
+    }
+
+    // Bulk calls made so far; compare with the number of requests for the average batch size
+    public long bulkCalls() {
+        return bulkCalls.sum();
+    }
+
+    // Sends the open batch without waiting for its window; batches already handed over are
+    // still sent. Does not wait for the bulk calls to finish.
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (current != null) {
+            dispatch(current);
+            current = null;
+        }
+        scheduler.shutdownNow();
+        bulkExecutor.shutdown();
+    }
+
+    // Window expired: send the batch unless it was already sent because it filled up
+    private synchronized void flush(Batch batch) {
+        if (current == batch) {
+            dispatch(batch);
+            current = null;
+        }
+    }
+
+    // Caller holds the lock
+    private void dispatch(Batch batch) {
+        bulkExecutor.execute(() -> send(batch));
+    }
+
+    private void send(Batch batch) {
+        Throwable failure = null;
+        try {
+            adaptee.specificRequests(batch.requests.size());
+            bulkCalls.increment();
+        } catch (Throwable t) {
+            // Errors too, or the callers in this batch would wait forever
+            failure = t;
+        }
+        Throwable outcome = failure;
+        try {
+            completionExecutor.execute(() -> complete(batch, outcome));
+        } catch (RejectedExecutionException e) {
+            // The completion executor was shut down: complete here rather than never
+            complete(batch, outcome);
+        }
+    }
+
+    private static void complete(Batch batch, Throwable failure) {
+        for (CompletableFuture<Void> request : batch.requests) {
+            if (failure == null) {
+                request.complete(null);
+            } else {
+                request.completeExceptionally(failure);
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
+
+// Compares the direct Adapter with the batching adapter, blocking and async, under concurrent
+// callers of a legacy API with a 1 ms round trip
+public class BatchingAdapterDemo {
+    private static final int CALLERS = 64;
+    private static final int REQUESTS_PER_CALLER = 50;
+    private static final long ROUND_TRIP_MILLIS = 1;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.printf("%-22s %10s %12s %12s %12s%n", "adapter", "req/s", "mean (ms)", "p99 (ms)", "round trips");
+
+        LegacyAdaptee direct = new LegacyAdaptee(ROUND_TRIP_MILLIS);
+        run("direct Adapter", new Adapter(direct), direct);
+
+        LegacyAdaptee batched = new LegacyAdaptee(ROUND_TRIP_MILLIS);
+        try (BatchingAdapter adapter = new BatchingAdapter(batched, 2, 64)) {
+            run("batching, blocking", adapter, batched);
+        }
+
+        LegacyAdaptee async = new LegacyAdaptee(ROUND_TRIP_MILLIS);
+        try (BatchingAdapter adapter = new BatchingAdapter(async, 2, 64)) {
+            runAsync(adapter, async);
+        }
+
+        closeWithOpenBatch();
+        requestFromCallback();
+    }
+
+    // A callback that makes a blocking request() runs off the bulk thread, so it cannot deadlock
+    // waiting for a group the bulk thread would have to send
+    private static void requestFromCallback() {
+        LegacyAdaptee adaptee = new LegacyAdaptee(ROUND_TRIP_MILLIS);
+        try (BatchingAdapter adapter = new BatchingAdapter(adaptee, 2, 64)) {
+            adapter.requestAsync().thenRun(adapter::request).orTimeout(5, TimeUnit.SECONDS).join();
+            System.out.println("Blocking request() from a completion callback: done in " + adapter.bulkCalls() + " bulk calls");
+        }
+    }
+
+    // A batch whose window has not expired yet is sent by close(), not dropped
+    private static void closeWithOpenBatch() {
+        LegacyAdaptee adaptee = new LegacyAdaptee(ROUND_TRIP_MILLIS);
+        BatchingAdapter adapter = new BatchingAdapter(adaptee, 60_000, 64);
+        CompletableFuture<?>[] pending = {adapter.requestAsync(), adapter.requestAsync(), adapter.requestAsync()};
+        adapter.close();
+        CompletableFuture.allOf(pending).join();
+        System.out.println();
+        System.out.println("close() sent the open batch: " + pending.length + " requests in " + adapter.bulkCalls() + " bulk call");
+        try {
+            adapter.request();
+        } catch (IllegalStateException e) {
+            System.out.println("Request after close(): " + e.getMessage());
+        }
+    }
+
+    private static void run(String name, Target target, LegacyAdaptee adaptee) throws InterruptedException {
+        long[] latencies = new long[CALLERS * REQUESTS_PER_CALLER];
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(CALLERS);
+        for (int c = 0; c < CALLERS; c++) {
+            int offset = c * REQUESTS_PER_CALLER;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < REQUESTS_PER_CALLER; i++) {
+                        long begin = System.nanoTime();
+                        target.request();
+                        latencies[offset + i] = System.nanoTime() - begin;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        report(name, latencies, elapsed, adaptee);
+    }
+
+    // One thread issues every request without waiting, then waits for all of them
+    private static void runAsync(BatchingAdapter adapter, LegacyAdaptee adaptee) {
+        int requests = CALLERS * REQUESTS_PER_CALLER;
+        long[] latencies = new long[requests];
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+        long begin = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int index = i;
+            long issued = System.nanoTime();
+            futures[i] = adapter.requestAsync().thenRun(() -> latencies[index] = System.nanoTime() - issued);
+        }
+        CompletableFuture.allOf(futures).join();
+        report("batching, async", latencies, System.nanoTime() - begin, adaptee);
+    }
+
+    private static void report(String name, long[] latencies, long elapsed, LegacyAdaptee adaptee) {
+        Arrays.sort(latencies);
+        double mean = Arrays.stream(latencies).average().orElse(0);
+        System.out.printf("%-22s %,10.0f %12.2f %12.2f %12d%n", name, latencies.length / (elapsed / 1e9),
+                mean / 1e6, latencies[(int) (latencies.length * 0.99)] / 1e6, adaptee.roundTrips());
+    }
+}
@@ -0,0 +1,162 @@
+package Adapter_Design_Pattern;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+
+// Generates adapters at runtime instead of writing an Adapter class by hand. For a target
+// interface with a single abstract method and an adaptee method with the same parameter types,
+// generate() spins a hidden class (through LambdaMetafactory) whose implementation calls the
+// adaptee method directly, just like a hand-written adapter. No reflection or proxy is involved
+// per call, so the JIT can inline straight through it.
+final class AdapterGenerator {
+    private AdapterGenerator() {
+    }
+
+    // lookup must have full access to the package of the target and adaptee types, for example
+    // MethodHandles.lookup() called from that package. Returns a factory that wraps an adaptee.
+    static <T, A> Function<A, T> generate(MethodHandles.Lookup lookup, Class<T> target,
+                                          Class<A> adapteeType, String adapteeMethod) {
+        Method abstractMethod = singleAbstractMethod(target);
+        MethodType interfaceType = MethodType.methodType(abstractMethod.getReturnType(), abstractMethod.getParameterTypes());
+        try {
+            Method implementation = adapteeType.getMethod(adapteeMethod, abstractMethod.getParameterTypes());
+            MethodHandle handle = lookup.unreflect(implementation);
+            CallSite site = LambdaMetafactory.metafactory(lookup, abstractMethod.getName(),
+                    MethodType.methodType(target, adapteeType), interfaceType, handle, interfaceType);
+            MethodHandle factory = site.getTarget();
+            return adaptee -> {
+                try {
+                    return target.cast(factory.invoke(adaptee));
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            };
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(adapteeType.getSimpleName() + " has no method " + adapteeMethod
+                    + " matching " + abstractMethod, e);
+        } catch (IllegalAccessException | LambdaConversionException e) {
+            throw new IllegalArgumentException("Cannot adapt " + target.getSimpleName() + " to "
+                    + adapteeType.getSimpleName() + "." + adapteeMethod, e);
+        }
+    }
+
+    private static Method singleAbstractMethod(Class<?> target) {
+        if (!target.isInterface()) {
+            throw new IllegalArgumentException(target + " is not an interface");
+        }
+        Method found = null;
+        for (Method method : target.getMethods()) {
+            if (!Modifier.isAbstract(method.getModifiers()) || isObjectMethod(method)) {
+                continue;
+            }
+            if (found != null) {
+                throw new IllegalArgumentException(target.getSimpleName() + " has more than one abstract method");
+            }
+            found = method;
+        }
+        if (found == null) {
+            throw new IllegalArgumentException(target.getSimpleName() + " has no abstract method");
+        }
+        return found;
+    }
+
+    private static boolean isObjectMethod(Method method) {
+        try {
+            Object.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
+
+// Quiet adaptee for the benchmark
+class CountingAdaptee extends Adaptee {
+    long requests;
+
+    @Override
+    public void specificRequest() {
+        requests++;
+    }
+}
+
+// Generates a Target adapter for Adaptee.specificRequest and compares its per-call cost with
+// the hand-written Adapter and with a reflective java.lang.reflect.Proxy adapter
+public class GeneratedAdapterDemo {
+    private static final int CALLS = 100_000_000;
+    private static final int ROUNDS = 3;
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws NoSuchMethodException {
+        Function<Adaptee, Target> generated = AdapterGenerator.generate(MethodHandles.lookup(), Target.class,
+                Adaptee.class, "specificRequest");
+        Target adapter = generated.apply(new Adaptee());
+        System.out.println("Generated class: " + adapter.getClass().getName() + " (hidden: " + adapter.getClass().isHidden() + ")");
+        new Client(adapter).makeRequest();
+
+        CountingAdaptee handWrittenAdaptee = new CountingAdaptee();
+        CountingAdaptee generatedAdaptee = new CountingAdaptee();
+        CountingAdaptee reflectiveAdaptee = new CountingAdaptee();
+        Adapter handWritten = new Adapter(handWrittenAdaptee);
+        Target generatedAdapter = generated.apply(generatedAdaptee);
+        Method specificRequest = Adaptee.class.getMethod("specificRequest");
+        Target reflective = (Target) java.lang.reflect.Proxy.newProxyInstance(Target.class.getClassLoader(),
+                new Class<?>[] {Target.class}, (proxy, method, arguments) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        return method.invoke(reflectiveAdaptee, arguments);
+                    }
+                    return specificRequest.invoke(reflectiveAdaptee);
+                });
+
+        System.out.println();
+        System.out.printf("%-6s %18s %18s %18s%n", "round", "hand-written (ns)", "generated (ns)", "reflective (ns)");
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            runHandWritten(handWritten);
+            long handWrittenNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            runGenerated(generatedAdapter);
+            long generatedNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            runReflective(reflective);
+            long reflectiveNanos = System.nanoTime() - start;
+            System.out.printf("%-6d %18.2f %18.2f %18.2f%n", round, (double) handWrittenNanos / CALLS,
+                    (double) generatedNanos / CALLS, (double) reflectiveNanos / (CALLS / 100));
+        }
+        sink = handWrittenAdaptee.requests + generatedAdaptee.requests + reflectiveAdaptee.requests;
+        if (handWrittenAdaptee.requests != generatedAdaptee.requests) {
+            throw new IllegalStateException("Adapters made different numbers of calls");
+        }
+    }
+
+    // Separate loops, so each call site only ever sees one adapter class
+
+    private static void runHandWritten(Target target) {
+        for (int i = 0; i < CALLS; i++) {
+            target.request();
+        }
+    }
+
+    private static void runGenerated(Target target) {
+        for (int i = 0; i < CALLS; i++) {
+            target.request();
+        }
+    }
+
+    // Far slower, so it runs 1% of the calls
+    private static void runReflective(Target target) {
+        for (int i = 0; i < CALLS / 100; i++) {
+            target.request();
+        }
+    }
+}
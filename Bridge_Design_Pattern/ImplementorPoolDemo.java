@@ -0,0 +1,300 @@
+package Bridge_Design_Pattern;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// One implementor in an ImplementorPool, with its live metrics
+final class PooledImplementor {
+    // Weight of a new sample in the latency moving average
+    private static final double ALPHA = 0.2;
+
+    final String name;
+    final Implementor implementor;
+    final AtomicInteger inFlight = new AtomicInteger();
+    final LongAdder calls = new LongAdder();
+    final LongAdder totalNanos = new LongAdder();
+    final CompletableFuture<Void> drained = new CompletableFuture<>();
+    volatile boolean retired;
+    // Written racily by concurrent callers; a lost update only drops one sample
+    volatile double averageNanos;
+
+    PooledImplementor(String name, Implementor implementor) {
+        this.name = name;
+        this.implementor = implementor;
+    }
+
+    void record(long nanos) {
+        calls.increment();
+        totalNanos.add(nanos);
+        double average = averageNanos;
+        averageNanos = average == 0 ? nanos : average + ALPHA * (nanos - average);
+    }
+
+    // Called after a call finishes; completes drained once a retired implementor is idle
+    void release() {
+        if (inFlight.decrementAndGet() == 0 && retired) {
+            drained.complete(null);
+        }
+    }
+
+    void retire() {
+        retired = true;
+        if (inFlight.get() == 0) {
+            drained.complete(null);
+        }
+    }
+
+    @Override
+    public String toString() {
+        long count = calls.sum();
+        return String.format("%-10s calls=%-7d in-flight=%-3d mean=%6.2fms recent=%6.2fms%s", name, count, inFlight.get(),
+                count == 0 ? 0 : totalNanos.sum() / 1e6 / count, averageNanos / 1e6, retired ? " (retired)" : "");
+    }
+}
+
+// Picks which pool member handles the next call
+interface LoadBalancer {
+    int choose(PooledImplementor[] members);
+
+    static LoadBalancer roundRobin() {
+        AtomicInteger next = new AtomicInteger();
+        return members -> Math.floorMod(next.getAndIncrement(), members.length);
+    }
+
+    // The member with the fewest calls in flight; ties go to the earlier member
+    static LoadBalancer leastOutstanding() {
+        return members -> {
+            int best = 0;
+            for (int i = 1; i < members.length; i++) {
+                if (members[i].inFlight.get() < members[best].inFlight.get()) {
+                    best = i;
+                }
+            }
+            return best;
+        };
+    }
+
+    // Random choice weighted by the inverse of each member's recent latency; members without
+    // samples yet get the weight of the fastest member, so they are tried
+    static LoadBalancer latencyWeighted() {
+        return members -> {
+            double fastest = Double.MAX_VALUE;
+            for (PooledImplementor member : members) {
+                if (member.averageNanos > 0) {
+                    fastest = Math.min(fastest, member.averageNanos);
+                }
+            }
+            double[] weights = new double[members.length];
+            double total = 0;
+            for (int i = 0; i < members.length; i++) {
+                double latency = members[i].averageNanos > 0 ? members[i].averageNanos : fastest;
+                weights[i] = latency == Double.MAX_VALUE ? 1 : 1 / latency;
+                total += weights[i];
+            }
+            double pick = ThreadLocalRandom.current().nextDouble(total);
+            for (int i = 0; i < members.length; i++) {
+                pick -= weights[i];
+                if (pick < 0) {
+                    return i;
+                }
+            }
+            return members.length - 1;
+        };
+    }
+}
+
+// Implementor that spreads calls over a pool of implementors, so one RefinedAbstraction can
+// use several backends. Members can be replaced at runtime: new calls only go to the new set
+// at once, and each removed member is drained, i.e. its calls already in flight finish first.
+class ImplementorPool implements Implementor {
+    private final LoadBalancer balancer;
+    private volatile PooledImplementor[] members;
+    private final Object swapLock = new Object();
+
+    public ImplementorPool(LoadBalancer balancer) {
+        this.balancer = balancer;
+        this.members = new PooledImplementor[0];
+    }
+
+    @Override
+    public void operationImpl() {
+        while (true) {
+            PooledImplementor[] current = members;
+            if (current.length == 0) {
+                throw new IllegalStateException("No implementors in the pool");
+            }
+            PooledImplementor member = current[balancer.choose(current)];
+            member.inFlight.incrementAndGet();
+            // Pairs with retire(): either this call sees the flag and picks again, or the drain
+            // sees this call in flight and waits for it
+            if (member.retired) {
+                member.release();
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                member.implementor.operationImpl();
+            } finally {
+                member.record(System.nanoTime() - start);
+                member.release();
+            }
+            return;
+        }
+    }
+
+    // Names identify members for swap(), so a name already in the pool is rejected
+    public void add(String name, Implementor implementor) {
+        synchronized (swapLock) {
+            if (indexOf(members, name) >= 0) {
+                throw new IllegalArgumentException("Duplicate implementor name: " + name);
+            }
+            List<PooledImplementor> next = new ArrayList<>(List.of(members));
+            next.add(new PooledImplementor(name, implementor));
+            members = next.toArray(new PooledImplementor[0]);
+        }
+    }
+
+    // Atomically replaces the member called name; the future completes once it has drained.
+    // replacementName may equal name but must not belong to another member.
+    public CompletableFuture<Void> swap(String name, String replacementName, Implementor replacement) {
+        PooledImplementor removed;
+        synchronized (swapLock) {
+            PooledImplementor[] next = members.clone();
+            int index = indexOf(next, name);
+            if (index < 0) {
+                throw new IllegalArgumentException("No implementor named " + name);
+            }
+            if (!replacementName.equals(name) && indexOf(next, replacementName) >= 0) {
+                throw new IllegalArgumentException("Duplicate implementor name: " + replacementName);
+            }
+            removed = next[index];
+            next[index] = new PooledImplementor(replacementName, replacement);
+            members = next;
+        }
+        removed.retire();
+        return removed.drained;
+    }
+
+    private static int indexOf(PooledImplementor[] members, String name) {
+        for (int i = 0; i < members.length; i++) {
+            if (members[i].name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public List<PooledImplementor> stats() {
+        return List.of(members);
+    }
+}
+
+// Backend with a fixed latency and a fixed number of connections; calls beyond that wait
+class PooledBackend implements Implementor {
+    private final long latencyMillis;
+    private final Semaphore connections;
+
+    PooledBackend(long latencyMillis, int connections) {
+        this.latencyMillis = latencyMillis;
+        this.connections = new Semaphore(connections);
+    }
+
+    @Override
+    public void operationImpl() {
+        connections.acquireUninterruptibly();
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during operation", e);
+        } finally {
+            connections.release();
+        }
+    }
+}
+
+// Load test: two fast backends and one slow one, each balancing policy in turn, then a hot swap
+// of the slow backend while the load is running. Load goes straight to the pool, which is the
+// Implementor RefinedAbstraction calls, to keep console output out of the measurement.
+public class ImplementorPoolDemo {
+    private static final int CALLERS = 24;
+    private static final long RUN_MILLIS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        ImplementorPool demoPool = new ImplementorPool(LoadBalancer.roundRobin());
+        demoPool.add("A", new ConcreteImplementorA());
+        demoPool.add("B", new ConcreteImplementorB());
+        Abstraction abstraction = new RefinedAbstraction(demoPool);
+        abstraction.operation();
+        abstraction.operation();
+        try {
+            demoPool.add("A", new ConcreteImplementorB());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+        System.out.println();
+
+        String[] names = {"round-robin", "least-outstanding", "latency-weighted"};
+        LoadBalancer[] balancers = {LoadBalancer.roundRobin(), LoadBalancer.leastOutstanding(), LoadBalancer.latencyWeighted()};
+        for (int i = 0; i < balancers.length; i++) {
+            ImplementorPool pool = pool(balancers[i]);
+            long calls = load(pool, RUN_MILLIS, null);
+            System.out.printf("%s: %,.0f calls/s%n", names[i], calls / (RUN_MILLIS / 1e3));
+            pool.stats().forEach(member -> System.out.println("  " + member));
+        }
+
+        System.out.println();
+        ImplementorPool pool = pool(LoadBalancer.leastOutstanding());
+        long calls = load(pool, RUN_MILLIS, () -> {
+            long start = System.nanoTime();
+            pool.swap("slow", "fast-3", new PooledBackend(2, 4)).join();
+            System.out.printf("Swapped slow for fast-3 under load; slow drained in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+        });
+        System.out.printf("least-outstanding with hot swap: %,.0f calls/s%n", calls / (RUN_MILLIS / 1e3));
+        pool.stats().forEach(member -> System.out.println("  " + member));
+    }
+
+    private static ImplementorPool pool(LoadBalancer balancer) {
+        ImplementorPool pool = new ImplementorPool(balancer);
+        pool.add("fast-1", new PooledBackend(2, 4));
+        pool.add("fast-2", new PooledBackend(2, 4));
+        pool.add("slow", new PooledBackend(20, 4));
+        return pool;
+    }
+
+    // Runs CALLERS threads against the pool for the given time; midway runs the swap, if any
+    private static long load(ImplementorPool pool, long millis, Runnable midway) throws InterruptedException {
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        LongAdder completed = new LongAdder();
+        CountDownLatch done = new CountDownLatch(CALLERS);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (int c = 0; c < CALLERS; c++) {
+            callers.execute(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        pool.operationImpl();
+                        completed.increment();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        if (midway != null) {
+            Thread.sleep(millis / 2);
+            midway.run();
+        }
+        done.await();
+        callers.shutdown();
+        return completed.sum();
+    }
+}
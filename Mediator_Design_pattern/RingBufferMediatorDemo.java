@@ -0,0 +1,290 @@
+package Mediator_Design_pattern;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Wait Strategy used by consumers waiting for messages and by senders waiting for free slots
+interface WaitStrategy {
+    void idle();
+
+    WaitStrategy BUSY_SPIN = Thread::onSpinWait;
+    WaitStrategy YIELD = Thread::yield;
+    WaitStrategy PARK = () -> LockSupport.parkNanos(1_000L);
+}
+
+// Reusable ring buffer slot; a message is written into it once and read by every consumer
+final class MessageEvent {
+    String message;
+    Colleague sender;
+}
+
+// Ring buffer backed Mediator: send() writes into a preallocated slot and returns,
+// while each registered colleague consumes the ring on its own thread
+class RingBufferMediator implements Mediator, AutoCloseable {
+    private final MessageEvent[] ring;
+    private final int mask;
+    // Sequence stored in each slot once its event is fully written
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final WaitStrategy waitStrategy;
+    private final List<Consumer> consumers = new ArrayList<>();
+    private final LongAdder failed = new LongAdder();
+    // Lowest consumer sequence seen by senders; refreshed only when the ring looks full
+    private volatile long gatingCache = -1;
+    private volatile boolean running;
+
+    public RingBufferMediator(int capacity, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.ring = new MessageEvent[capacity];
+        this.mask = capacity - 1;
+        this.published = new AtomicLongArray(capacity);
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new MessageEvent();
+            published.set(i, -1);
+        }
+    }
+
+    // Colleagues must be registered before start()
+    public void register(Colleague colleague) {
+        if (running) {
+            throw new IllegalStateException("Cannot register colleagues after start()");
+        }
+        consumers.add(new Consumer(colleague));
+    }
+
+    public void start() {
+        running = true;
+        for (Consumer consumer : consumers) {
+            consumer.thread.start();
+        }
+    }
+
+    @Override
+    public void send(String message, Colleague colleague) {
+        long sequence = claimed.incrementAndGet();
+        long wrapPoint = sequence - ring.length;
+        if (wrapPoint > gatingCache) {
+            long minimum;
+            while (wrapPoint > (minimum = minimumConsumerSequence())) {
+                waitStrategy.idle();
+            }
+            gatingCache = minimum;
+        }
+        int index = (int) sequence & mask;
+        MessageEvent event = ring[index];
+        event.message = message;
+        event.sender = colleague;
+        published.lazySet(index, sequence);
+    }
+
+    // Blocks until every consumer has processed every message sent so far
+    public void awaitDrained() {
+        long target = claimed.get();
+        while (minimumConsumerSequence() < target) {
+            waitStrategy.idle();
+        }
+    }
+
+    // Deliveries whose receive threw; the consumer skips them and carries on
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    private long minimumConsumerSequence() {
+        long minimum = Long.MAX_VALUE;
+        for (Consumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    // Waits for the consumers to finish the messages already sent. If interrupted, stops
+    // waiting and keeps the interrupt flag set; the daemon consumers then finish on their own.
+    @Override
+    public void close() {
+        running = false;
+        try {
+            for (Consumer consumer : consumers) {
+                consumer.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // One consumer per colleague, delivering every message except the colleague's own
+    private final class Consumer implements Runnable {
+        final Colleague colleague;
+        final AtomicLong sequence = new AtomicLong(-1);
+        final Thread thread;
+
+        Consumer(Colleague colleague) {
+            this.colleague = colleague;
+            this.thread = new Thread(this, "ring-consumer-" + consumers.size());
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (running || next <= claimed.get()) {
+                long available = next - 1;
+                while (published.get((int) (available + 1) & mask) == available + 1) {
+                    available++;
+                }
+                if (available < next) {
+                    waitStrategy.idle();
+                    continue;
+                }
+                // Deliver the whole available batch before publishing progress once
+                long s = next;
+                try {
+                    for (; s <= available; s++) {
+                        MessageEvent event = ring[(int) s & mask];
+                        if (event.sender != colleague) {
+                            // A failing colleague, Errors included, must not stop its sequence,
+                            // or every sender would eventually wait on it forever
+                            try {
+                                colleague.receive(event.message);
+                            } catch (Throwable e) {
+                                failed.increment();
+                            }
+                        }
+                    }
+                } finally {
+                    // Progress up to the last event handled is published even if the batch is cut short
+                    sequence.lazySet(Math.min(s, available));
+                }
+                next = available + 1;
+            }
+        }
+    }
+}
+
+// Colleague that counts the messages it receives instead of printing them
+class CountingColleague extends Colleague {
+    private volatile long received;
+
+    public CountingColleague(Mediator mediator) {
+        super(mediator);
+    }
+
+    @Override
+    public void receive(String message) {
+        // Only one thread ever delivers to a given colleague
+        received = received + 1;
+    }
+
+    public void send(String message) {
+        mediator.send(message, this);
+    }
+
+    public long receivedCount() {
+        return received;
+    }
+}
+
+// Compares end-to-end messages/second of the ring buffer mode with direct ConcreteMediator.send
+public class RingBufferMediatorDemo {
+    private static final int MESSAGES = 10_000_000;
+    private static final int ROUNDS = 3;
+
+    // Volatile sink so the JIT cannot eliminate the direct-call loop
+    private static volatile long directReceived;
+
+    public static void main(String[] args) {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : MESSAGES;
+
+        try (RingBufferMediator mediator = new RingBufferMediator(1024, WaitStrategy.PARK)) {
+            Colleague printer = new Colleague(mediator) {
+                @Override
+                public void receive(String message) {
+                    System.out.println("Colleague received on " + Thread.currentThread().getName() + ": " + message);
+                }
+            };
+            CountingColleague sender = new CountingColleague(mediator);
+            Colleague faulty = new Colleague(mediator) {
+                @Override
+                public void receive(String message) {
+                    if (message.startsWith("Still")) {
+                        throw new AssertionError("cannot handle " + message);
+                    }
+                    throw new IllegalStateException("cannot handle " + message);
+                }
+            };
+            mediator.register(printer);
+            mediator.register(sender);
+            mediator.register(faulty);
+            mediator.start();
+            sender.send("Hello through the ring buffer");
+            sender.send("Still delivered after a failing colleague");
+            mediator.awaitDrained();
+            System.out.println("Failed deliveries: " + mediator.failedCount());
+        }
+
+        System.out.println();
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("Round " + round + " (" + messages + " messages)");
+            report("direct ConcreteMediator", direct(messages), messages);
+            report("ring, busy-spin", ring(messages, WaitStrategy.BUSY_SPIN), messages);
+            report("ring, yield", ring(messages, WaitStrategy.YIELD), messages);
+            report("ring, park", ring(messages, WaitStrategy.PARK), messages);
+        }
+    }
+
+    private static long direct(int messages) {
+        ConcreteMediator mediator = new ConcreteMediator();
+        directReceived = 0;
+        ConcreteColleague1 sender = new ConcreteColleague1(mediator);
+        ConcreteColleague2 receiver = new ConcreteColleague2(mediator) {
+            @Override
+            public void receive(String message) {
+                directReceived = directReceived + 1;
+            }
+        };
+        mediator.setColleague1(sender);
+        mediator.setColleague2(receiver);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            sender.send("tick");
+        }
+        long elapsed = System.nanoTime() - start;
+        if (directReceived != messages) {
+            throw new IllegalStateException("Lost messages: " + directReceived);
+        }
+        return elapsed;
+    }
+
+    private static long ring(int messages, WaitStrategy waitStrategy) {
+        try (RingBufferMediator mediator = new RingBufferMediator(1 << 16, waitStrategy)) {
+            CountingColleague sender = new CountingColleague(mediator);
+            CountingColleague receiver = new CountingColleague(mediator);
+            mediator.register(sender);
+            mediator.register(receiver);
+            mediator.start();
+
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                sender.send("tick");
+            }
+            mediator.awaitDrained();
+            long elapsed = System.nanoTime() - start;
+            if (receiver.receivedCount() != messages) {
+                throw new IllegalStateException("Lost messages: " + receiver.receivedCount());
+            }
+            return elapsed;
+        }
+    }
+
+    private static void report(String mode, long elapsedNanos, int messages) {
+        System.out.printf("  %-24s %,14.0f msg/s%n", mode, messages / (elapsedNanos / 1e9));
+    }
+}
@@ -0,0 +1,410 @@
+package Mediator_Design_pattern;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Envelope carried through a mailbox, stamped at publish time for latency tracking
+final class Envelope {
+    final String message;
+    final long publishedAt;
+
+    Envelope(String message, long publishedAt) {
+        this.message = message;
+        this.publishedAt = publishedAt;
+    }
+}
+
+// Per-colleague mailbox. At most one drain task runs at a time, so a colleague
+// always receives its messages in order and on a single thread. A message whose receive
+// throws is counted as failed and the drain moves on to the next one.
+final class Mailbox implements Runnable {
+    private static final int DRAIN_BATCH = 256;
+
+    final Colleague owner;
+    private final TopicMediator mediator;
+    private final Queue<Envelope> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Topics this mailbox is subscribed to; only changed inside TopicMediator's mailboxes.compute
+    int subscriptions;
+
+    Mailbox(Colleague owner, TopicMediator mediator) {
+        this.owner = owner;
+        this.mediator = mediator;
+    }
+
+    void offer(Envelope envelope) {
+        queue.offer(envelope);
+        if (scheduled.compareAndSet(false, true)) {
+            schedule();
+        }
+    }
+
+    // Called with scheduled set. If the executor rejects the drain task (it was shut down),
+    // the queued messages are dropped and the flag cleared, so the mailbox never stays
+    // marked as scheduled with nobody to drain it
+    private void schedule() {
+        while (true) {
+            try {
+                mediator.schedule(this);
+                return;
+            } catch (RejectedExecutionException e) {
+                int dropped = 0;
+                while (queue.poll() != null) {
+                    dropped++;
+                }
+                mediator.dropped(dropped);
+                scheduled.set(false);
+                // A message offered while we were dropping saw the flag set and did not schedule
+                if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        int drained = 0;
+        int failed = 0;
+        long totalLatency = 0;
+        long maxLatency = 0;
+        try {
+            Envelope envelope;
+            while (drained < DRAIN_BATCH && (envelope = queue.poll()) != null) {
+                drained++;
+                try {
+                    owner.receive(envelope.message);
+                } catch (Throwable e) {
+                    // Errors included: one bad message must not end the batch and leave the mailbox scheduled
+                    failed++;
+                }
+                long latency = System.nanoTime() - envelope.publishedAt;
+                totalLatency += latency;
+                maxLatency = Math.max(maxLatency, latency);
+            }
+        } finally {
+            mediator.delivered(drained, failed, totalLatency, maxLatency);
+            scheduled.set(false);
+        }
+        // Re-schedule if more work arrived (or the batch limit was hit) after we stopped polling
+        if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            schedule();
+        }
+    }
+}
+
+// Subscriber set for one topic, striped so that subscribe/unsubscribe only copies
+// one stripe's array instead of the whole subscriber list
+final class Topic {
+    private final List<CopyOnWriteArrayList<Mailbox>> stripes;
+
+    Topic(int stripeCount) {
+        stripes = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.add(new CopyOnWriteArrayList<>());
+        }
+    }
+
+    private CopyOnWriteArrayList<Mailbox> stripeFor(Mailbox mailbox) {
+        int hash = System.identityHashCode(mailbox.owner);
+        return stripes.get(Math.floorMod(hash ^ (hash >>> 16), stripes.size()));
+    }
+
+    boolean add(Mailbox mailbox) {
+        return stripeFor(mailbox).addIfAbsent(mailbox);
+    }
+
+    boolean remove(Mailbox mailbox) {
+        return stripeFor(mailbox).remove(mailbox);
+    }
+
+    int publish(Envelope envelope, Colleague sender) {
+        int count = 0;
+        for (CopyOnWriteArrayList<Mailbox> stripe : stripes) {
+            for (Mailbox mailbox : stripe) {
+                if (mailbox.owner != sender) {
+                    mailbox.offer(envelope);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        int size = 0;
+        for (CopyOnWriteArrayList<Mailbox> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+}
+
+// Topic-based Mediator: routes by topic to any number of colleagues and delivers
+// asynchronously through per-colleague mailboxes
+class TopicMediator implements Mediator, AutoCloseable {
+    // Topic used by the plain Mediator.send(message, colleague) call
+    static final String BROADCAST = "*";
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final Map<Colleague, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final int stripeCount;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public TopicMediator() {
+        this(Executors.newWorkStealingPool(), 64);
+    }
+
+    // Pass Executors.newVirtualThreadPerTaskExecutor() here on JDK 21+ to drain
+    // mailboxes on virtual threads
+    public TopicMediator(ExecutorService executor, int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("stripeCount must be positive");
+        }
+        this.executor = executor;
+        this.stripeCount = stripeCount;
+    }
+
+    public void subscribe(String topic, Colleague colleague) {
+        Topic subscribers = topics.computeIfAbsent(topic, t -> new Topic(stripeCount));
+        mailboxes.compute(colleague, (c, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox(c, this);
+            }
+            if (subscribers.add(mailbox)) {
+                mailbox.subscriptions++;
+            }
+            return mailbox;
+        });
+    }
+
+    // Once a colleague has left its last topic its mailbox is dropped; messages already
+    // queued in it are still delivered
+    public void unsubscribe(String topic, Colleague colleague) {
+        Topic subscribers = topics.get(topic);
+        if (subscribers == null) {
+            return;
+        }
+        mailboxes.computeIfPresent(colleague, (c, mailbox) -> {
+            if (subscribers.remove(mailbox)) {
+                mailbox.subscriptions--;
+            }
+            return mailbox.subscriptions == 0 ? null : mailbox;
+        });
+    }
+
+    // Delivers to every subscriber of the topic except the sender; returns the fan-out
+    public int publish(String topic, String message, Colleague sender) {
+        Topic subscribers = topics.get(topic);
+        if (subscribers == null) {
+            return 0;
+        }
+        int fanOut = subscribers.publish(new Envelope(message, System.nanoTime()), sender);
+        published.add(fanOut);
+        return fanOut;
+    }
+
+    @Override
+    public void send(String message, Colleague colleague) {
+        publish(BROADCAST, message, colleague);
+    }
+
+    public int subscriberCount(String topic) {
+        Topic subscribers = topics.get(topic);
+        return subscribers == null ? 0 : subscribers.size();
+    }
+
+    // Blocks until every published message has been received or dropped, or the timeout expires
+    public boolean awaitDelivery(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (delivered.sum() + dropped.sum() < published.sum()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    public long averageLatencyNanos() {
+        long count = delivered.sum();
+        return count == 0 ? 0 : totalLatencyNanos.sum() / count;
+    }
+
+    public long maxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    // Deliveries whose receive threw; they still count as delivered for awaitDelivery
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    // Messages discarded because the executor rejected their mailbox's drain task after close()
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    int mailboxCount() {
+        return mailboxes.size();
+    }
+
+    void schedule(Mailbox mailbox) {
+        executor.execute(mailbox);
+    }
+
+    void dropped(int count) {
+        dropped.add(count);
+    }
+
+    // Called once per drained batch, so the shared counters are touched once per batch
+    void delivered(int count, int failures, long totalLatency, long maxLatency) {
+        totalLatencyNanos.add(totalLatency);
+        if (maxLatency > maxLatencyNanos.get()) {
+            maxLatencyNanos.accumulateAndGet(maxLatency, Math::max);
+        }
+        if (failures > 0) {
+            failed.add(failures);
+        }
+        delivered.add(count);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
+
+// Colleague that can take part in any number of topics
+class TopicColleague extends Colleague {
+    private final String name;
+    private final boolean verbose;
+    private final LongAdder received = new LongAdder();
+
+    public TopicColleague(String name, TopicMediator mediator, boolean verbose) {
+        super(mediator);
+        this.name = name;
+        this.verbose = verbose;
+    }
+
+    @Override
+    public void receive(String message) {
+        received.increment();
+        if (verbose) {
+            System.out.println(name + " received: " + message);
+        }
+    }
+
+    public void publish(String topic, String message) {
+        ((TopicMediator) mediator).publish(topic, message, this);
+    }
+
+    public void send(String message) {
+        mediator.send(message, this);
+    }
+
+    public long receivedCount() {
+        return received.sum();
+    }
+}
+
+// Demonstrates topic routing and measures fan-out throughput and delivery latency
+public class TopicMediatorDemo {
+    public static void main(String[] args) throws InterruptedException {
+        try (TopicMediator mediator = new TopicMediator()) {
+            TopicColleague alice = new TopicColleague("Alice", mediator, true);
+            TopicColleague bob = new TopicColleague("Bob", mediator, true);
+            TopicColleague carol = new TopicColleague("Carol", mediator, true);
+
+            mediator.subscribe("orders", alice);
+            mediator.subscribe("orders", bob);
+            mediator.subscribe("alerts", carol);
+            mediator.subscribe(TopicMediator.BROADCAST, alice);
+            mediator.subscribe(TopicMediator.BROADCAST, bob);
+            mediator.subscribe(TopicMediator.BROADCAST, carol);
+
+            alice.publish("orders", "Order #1 placed");
+            bob.publish("alerts", "Disk almost full");
+            carol.send("Hello everyone");
+            mediator.awaitDelivery(5, TimeUnit.SECONDS);
+
+            // A colleague whose receive throws, even an Error, does not stall its mailbox
+            Colleague faulty = new Colleague(mediator) {
+                @Override
+                public void receive(String message) {
+                    if (message.contains("#3")) {
+                        throw new AssertionError("cannot handle " + message);
+                    }
+                    throw new IllegalStateException("cannot handle " + message);
+                }
+            };
+            mediator.subscribe("orders", faulty);
+            alice.publish("orders", "Order #2 placed");
+            alice.publish("orders", "Order #3 placed");
+            mediator.awaitDelivery(5, TimeUnit.SECONDS);
+            mediator.unsubscribe("orders", faulty);
+            System.out.println("Failed deliveries: " + mediator.failedCount()
+                    + ", mailboxes after unsubscribe: " + mediator.mailboxCount());
+        }
+
+        // After close the drain task is rejected; the message is dropped rather than left stuck
+        TopicMediator closed = new TopicMediator();
+        closed.subscribe("orders", new TopicColleague("Dave", closed, true));
+        closed.close();
+        closed.publish("orders", "Order #4 placed", null);
+        System.out.println("Dropped after close: " + closed.droppedCount()
+                + ", settled: " + closed.awaitDelivery(1, TimeUnit.SECONDS));
+
+        System.out.println();
+        System.out.printf("%10s %12s %16s %14s %14s%n",
+                "colleagues", "messages", "deliveries/s", "avg lat (us)", "max lat (us)");
+        for (int colleagues : new int[] {10, 1_000, 100_000}) {
+            benchmark(colleagues);
+        }
+    }
+
+    private static void benchmark(int colleagues) throws InterruptedException {
+        int messages = Math.max(10, 2_000_000 / colleagues);
+        try (TopicMediator mediator = new TopicMediator()) {
+            TopicColleague publisher = new TopicColleague("publisher", mediator, false);
+            for (int i = 0; i < colleagues; i++) {
+                mediator.subscribe("bench", new TopicColleague("c" + i, mediator, false));
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < messages; i++) {
+                publisher.publish("bench", "tick");
+            }
+            if (!mediator.awaitDelivery(60, TimeUnit.SECONDS)) {
+                System.out.println("Timed out waiting for delivery at " + colleagues + " colleagues");
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long deliveries = (long) messages * colleagues;
+            System.out.printf("%10d %12d %16.0f %14.1f %14.1f%n",
+                    colleagues, messages,
+                    deliveries / (elapsed / 1e9),
+                    mediator.averageLatencyNanos() / 1e3,
+                    mediator.maxLatencyNanos() / 1e3);
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package Memeto_Design_Pattern;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Caretaker that stores periodic full checkpoints plus deltas between consecutive states.
+// Restoring any index replays at most checkpointInterval - 1 deltas. Checkpoints can
+// optionally be deflate-compressed.
+class DeltaCaretaker {
+    private static final byte NULL_STATE = 0;
+    private static final byte CHECKPOINT = 1;
+    private static final byte COMPRESSED_CHECKPOINT = 2;
+    private static final byte DELTA = 3;
+    private static final byte PATCH = 4;
+    // Unchanged runs shorter than this are folded into the surrounding patch
+    private static final int MIN_PATCH_GAP = 4;
+
+    private final int checkpointInterval;
+    private final boolean compress;
+    private final List<byte[]> entries = new ArrayList<>();
+    private String lastState;
+    private int sinceCheckpoint;
+    private long storedBytes;
+
+    public DeltaCaretaker(int checkpointInterval, boolean compress) {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("checkpointInterval must be positive");
+        }
+        this.checkpointInterval = checkpointInterval;
+        this.compress = compress;
+    }
+
+    public void addMemento(Memento memento) {
+        String state = memento.getState();
+        byte[] entry;
+        if (state == null) {
+            entry = new byte[] {NULL_STATE};
+            sinceCheckpoint = 0;
+        } else if (lastState == null || sinceCheckpoint + 1 >= checkpointInterval) {
+            entry = encodeCheckpoint(state);
+            sinceCheckpoint = 0;
+        } else {
+            entry = state.length() == lastState.length()
+                    ? encodePatch(lastState, state)
+                    : encodeDelta(lastState, state);
+            sinceCheckpoint++;
+        }
+        entries.add(entry);
+        storedBytes += entry.length;
+        lastState = state;
+    }
+
+    public Memento getMemento(int index) {
+        if (index < 0 || index >= entries.size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + entries.size());
+        }
+        int base = index;
+        while (entries.get(base)[0] == DELTA || entries.get(base)[0] == PATCH) {
+            base--;
+        }
+        String state = decodeCheckpoint(entries.get(base));
+        for (int i = base + 1; i <= index; i++) {
+            byte[] entry = entries.get(i);
+            state = entry[0] == PATCH ? applyPatch(state, entry) : applyDelta(state, entry);
+        }
+        return new Memento(state);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Payload bytes held by the history, excluding per-entry array headers
+    public long storedBytes() {
+        return storedBytes;
+    }
+
+    private byte[] encodeCheckpoint(String state) {
+        byte[] raw = encodeChars(state, 0, state.length());
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length + 8);
+        if (compress) {
+            out.write(COMPRESSED_CHECKPOINT);
+            writeVarInt(out, raw.length);
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, raw.length / 2)];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            deflater.end();
+        } else {
+            out.write(CHECKPOINT);
+            out.write(raw, 0, raw.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static String decodeCheckpoint(byte[] entry) {
+        switch (entry[0]) {
+            case NULL_STATE:
+                return null;
+            case CHECKPOINT:
+                return decodeChars(entry, 1, entry.length - 1);
+            case COMPRESSED_CHECKPOINT:
+                int[] position = {1};
+                int length = readVarInt(entry, position);
+                byte[] raw = new byte[length];
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(entry, position[0], entry.length - position[0]);
+                    inflater.inflate(raw);
+                } catch (DataFormatException e) {
+                    throw new IllegalStateException("Corrupt checkpoint", e);
+                } finally {
+                    inflater.end();
+                }
+                return decodeChars(raw, 0, raw.length);
+            default:
+                throw new IllegalStateException("Not a checkpoint entry: " + entry[0]);
+        }
+    }
+
+    // Delta = length of common prefix, length of common suffix, replacement for the middle
+    private static byte[] encodeDelta(String previous, String current) {
+        int max = Math.min(previous.length(), current.length());
+        int prefix = 0;
+        while (prefix < max && previous.charAt(prefix) == current.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && previous.charAt(previous.length() - 1 - suffix) == current.charAt(current.length() - 1 - suffix)) {
+            suffix++;
+        }
+        byte[] middle = encodeChars(current, prefix, current.length() - suffix);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(middle.length + 8);
+        out.write(DELTA);
+        writeVarInt(out, prefix);
+        writeVarInt(out, suffix);
+        out.write(middle, 0, middle.length);
+        return out.toByteArray();
+    }
+
+    private static String applyDelta(String previous, byte[] entry) {
+        int[] position = {1};
+        int prefix = readVarInt(entry, position);
+        int suffix = readVarInt(entry, position);
+        String middle = decodeChars(entry, position[0], entry.length - position[0]);
+        return previous.substring(0, prefix) + middle + previous.substring(previous.length() - suffix);
+    }
+
+    // Patch for same-length states = list of (unchanged gap, replacement chunk) pairs,
+    // which stays small when a few scattered characters change
+    private static byte[] encodePatch(String previous, String current) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(PATCH);
+        int length = current.length();
+        int position = 0;
+        int i = 0;
+        while (i < length) {
+            if (previous.charAt(i) == current.charAt(i)) {
+                i++;
+                continue;
+            }
+            int start = i;
+            int end = i + 1;
+            int same = 0;
+            while (end < length && same < MIN_PATCH_GAP) {
+                same = previous.charAt(end) == current.charAt(end) ? same + 1 : 0;
+                end++;
+            }
+            end -= same;
+            byte[] chunk = encodeChars(current, start, end);
+            writeVarInt(out, start - position);
+            writeVarInt(out, chunk.length);
+            out.write(chunk, 0, chunk.length);
+            position = end;
+            i = end;
+        }
+        return out.toByteArray();
+    }
+
+    private static String applyPatch(String previous, byte[] entry) {
+        char[] chars = previous.toCharArray();
+        int[] position = {1};
+        int offset = 0;
+        while (position[0] < entry.length) {
+            offset += readVarInt(entry, position);
+            int byteLength = readVarInt(entry, position);
+            String chunk = decodeChars(entry, position[0], byteLength);
+            position[0] += byteLength;
+            chunk.getChars(0, chunk.length(), chars, offset);
+            offset += chunk.length();
+        }
+        return new String(chars);
+    }
+
+    // Chars are stored one by one as 1-3 bytes (modified UTF-8), so any substring,
+    // including one that splits a surrogate pair, round-trips exactly
+    private static byte[] encodeChars(String text, int from, int to) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(to - from);
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c != 0 && c < 0x80) {
+                out.write(c);
+            } else if (c < 0x800) {
+                out.write(0xC0 | (c >> 6));
+                out.write(0x80 | (c & 0x3F));
+            } else {
+                out.write(0xE0 | (c >> 12));
+                out.write(0x80 | ((c >> 6) & 0x3F));
+                out.write(0x80 | (c & 0x3F));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static String decodeChars(byte[] data, int offset, int length) {
+        StringBuilder text = new StringBuilder(length);
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int b = data[i++] & 0xFF;
+            if (b < 0x80) {
+                text.append((char) b);
+            } else if (b < 0xE0) {
+                text.append((char) (((b & 0x1F) << 6) | (data[i++] & 0x3F)));
+            } else {
+                text.append((char) (((b & 0x0F) << 12) | ((data[i++] & 0x3F) << 6) | (data[i++] & 0x3F)));
+            }
+        }
+        return text.toString();
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] data, int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
+
+// Demonstrates the delta history and reports memory saved and restore latency
+public class DeltaCaretakerDemo {
+    private static final int STATE_LENGTH = 2_048;
+    private static final int CHECKPOINT_INTERVAL = 64;
+    private static final int RESTORES = 10_000;
+
+    public static void main(String[] args) {
+        Originator originator = new Originator();
+        DeltaCaretaker caretaker = new DeltaCaretaker(4, true);
+        for (int i = 1; i <= 6; i++) {
+            originator.setState("Document revision #" + i);
+            caretaker.addMemento(originator.saveStateToMemento());
+        }
+        originator.getStateFromMemento(caretaker.getMemento(2));
+        System.out.println("Restored State: " + originator.getState());
+        originator.getStateFromMemento(caretaker.getMemento(5));
+        System.out.println("Restored State: " + originator.getState());
+
+        System.out.println();
+        System.out.printf("%10s %11s %18s %16s %12s %16s%n",
+                "snapshots", "compressed", "full copies (MB)", "delta store (MB)", "saved", "restore avg (us)");
+        for (int snapshots : new int[] {1_000, 10_000, 100_000, 1_000_000}) {
+            benchmark(snapshots, false);
+            benchmark(snapshots, true);
+        }
+    }
+
+    private static void benchmark(int snapshots, boolean compress) {
+        Random random = new Random(42);
+        char[] state = new char[STATE_LENGTH];
+        for (int i = 0; i < state.length; i++) {
+            state[i] = (char) ('a' + random.nextInt(8));
+        }
+
+        Originator originator = new Originator();
+        DeltaCaretaker caretaker = new DeltaCaretaker(CHECKPOINT_INTERVAL, compress);
+        for (int i = 0; i < snapshots; i++) {
+            // Slowly changing state: a couple of characters edited per snapshot
+            state[random.nextInt(state.length)] = (char) ('a' + random.nextInt(26));
+            state[random.nextInt(state.length)] = (char) ('a' + random.nextInt(26));
+            originator.setState(new String(state));
+            caretaker.addMemento(originator.saveStateToMemento());
+        }
+
+        // Full copy: Memento (16) + String (24) + Latin-1 byte[] (16 + length), as kept by Caretaker
+        long fullCopyBytes = (long) snapshots * (16 + 24 + 16 + STATE_LENGTH);
+        // Delta store: payload plus a 16 byte header per entry array and a reference in the list
+        long deltaBytes = caretaker.storedBytes() + (long) snapshots * (16 + 4);
+
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < RESTORES; i++) {
+            sink += caretaker.getMemento(random.nextInt(snapshots)).getState().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink != (long) RESTORES * STATE_LENGTH) {
+            throw new IllegalStateException("Restored state has the wrong length");
+        }
+
+        System.out.printf("%10d %11s %18.1f %16.1f %11.1f%% %16.2f%n",
+                snapshots, compress ? "yes" : "no",
+                fullCopyBytes / 1e6, deltaBytes / 1e6,
+                100.0 * (fullCopyBytes - deltaBytes) / fullCopyBytes,
+                elapsed / 1e3 / RESTORES);
+    }
+}
@@ -0,0 +1,224 @@
+package Memeto_Design_Pattern;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Persistent vector: a 32-way trie where set/append copy only the path to the changed
+// leaf, so every version shares all untouched nodes with the versions before it
+final class PersistentVector<E> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, 0, new Object[WIDTH]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+
+    private PersistentVector(int size, int shift, Object[] root) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(int index) {
+        checkIndex(index);
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return (E) node[index & MASK];
+    }
+
+    PersistentVector<E> set(int index, E value) {
+        checkIndex(index);
+        return new PersistentVector<>(size, shift, set(shift, root, index, value));
+    }
+
+    PersistentVector<E> append(E value) {
+        if (size == 1 << (shift + BITS)) {
+            // Root is full: grow the trie by one level
+            Object[] newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = append(shift, null, size, value);
+            return new PersistentVector<>(size + 1, shift + BITS, newRoot);
+        }
+        return new PersistentVector<>(size + 1, shift, append(shift, root, size, value));
+    }
+
+    private static Object[] set(int level, Object[] node, int index, Object value) {
+        Object[] copy = node.clone();
+        if (level == 0) {
+            copy[index & MASK] = value;
+        } else {
+            int slot = (index >>> level) & MASK;
+            copy[slot] = set(level - BITS, (Object[]) node[slot], index, value);
+        }
+        return copy;
+    }
+
+    private static Object[] append(int level, Object[] node, int index, Object value) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        if (level == 0) {
+            copy[index & MASK] = value;
+        } else {
+            int slot = (index >>> level) & MASK;
+            copy[slot] = append(level - BITS, (Object[]) copy[slot], index, value);
+        }
+        return copy;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
+
+// Memento holding one immutable version of the document; creating it copies nothing
+final class DocumentMemento {
+    private final PersistentVector<String> lines;
+
+    DocumentMemento(PersistentVector<String> lines) {
+        this.lines = lines;
+    }
+
+    PersistentVector<String> getLines() {
+        return lines;
+    }
+}
+
+// Originator whose rich state (a list of lines) lives in a persistent vector, so
+// saveStateToMemento() and getStateFromMemento() are both O(1)
+class DocumentOriginator {
+    private PersistentVector<String> lines = PersistentVector.empty();
+
+    public void appendLine(String line) {
+        lines = lines.append(line);
+    }
+
+    public void setLine(int index, String line) {
+        lines = lines.set(index, line);
+    }
+
+    public String getLine(int index) {
+        return lines.get(index);
+    }
+
+    public int lineCount() {
+        return lines.size();
+    }
+
+    public DocumentMemento saveStateToMemento() {
+        return new DocumentMemento(lines);
+    }
+
+    public void getStateFromMemento(DocumentMemento memento) {
+        lines = memento.getLines();
+    }
+}
+
+// Same document model with full-copy snapshots, as the baseline for the allocation profile
+class FullCopyDocumentOriginator {
+    private final List<String> lines = new ArrayList<>();
+
+    public void appendLine(String line) {
+        lines.add(line);
+    }
+
+    public void setLine(int index, String line) {
+        lines.set(index, line);
+    }
+
+    public List<String> saveStateToMemento() {
+        return new ArrayList<>(lines);
+    }
+}
+
+// Compares time and allocated bytes per edit + snapshot for both originators
+public class PersistentOriginatorDemo {
+    private static final int LINES = 20_000;
+    private static final int SNAPSHOTS = 2_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        DocumentOriginator originator = new DocumentOriginator();
+        List<DocumentMemento> history = new ArrayList<>();
+        originator.appendLine("Line 1");
+        originator.appendLine("Line 2");
+        history.add(originator.saveStateToMemento());
+        originator.setLine(1, "Line 2 (edited)");
+        history.add(originator.saveStateToMemento());
+
+        originator.getStateFromMemento(history.get(0));
+        System.out.println("Restored line 2: " + originator.getLine(1));
+        originator.getStateFromMemento(history.get(1));
+        System.out.println("Restored line 2: " + originator.getLine(1));
+
+        System.out.println();
+        System.out.println(LINES + " lines, " + SNAPSHOTS + " edit + snapshot cycles, snapshots retained");
+        for (int round = 1; round <= ROUNDS; round++) {
+            fullCopy();
+            persistent();
+        }
+    }
+
+    private static void persistent() {
+        Random random = new Random(42);
+        DocumentOriginator originator = new DocumentOriginator();
+        for (int i = 0; i < LINES; i++) {
+            originator.appendLine("line " + i);
+        }
+        List<DocumentMemento> history = new ArrayList<>(SNAPSHOTS);
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < SNAPSHOTS; i++) {
+            originator.setLine(random.nextInt(LINES), "edit");
+            history.add(originator.saveStateToMemento());
+        }
+        long elapsed = System.nanoTime() - start;
+        report("persistent vector", elapsed, allocatedBytes() - allocatedBefore, history.size());
+    }
+
+    private static void fullCopy() {
+        Random random = new Random(42);
+        FullCopyDocumentOriginator originator = new FullCopyDocumentOriginator();
+        for (int i = 0; i < LINES; i++) {
+            originator.appendLine("line " + i);
+        }
+        List<List<String>> history = new ArrayList<>(SNAPSHOTS);
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < SNAPSHOTS; i++) {
+            originator.setLine(random.nextInt(LINES), "edit");
+            history.add(originator.saveStateToMemento());
+        }
+        long elapsed = System.nanoTime() - start;
+        report("full copy", elapsed, allocatedBytes() - allocatedBefore, history.size());
+    }
+
+    private static long allocatedBytes() {
+        // HotSpot exposes per-thread allocation counters through its ThreadMXBean extension
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void report(String mode, long elapsedNanos, long allocated, int snapshots) {
+        System.out.printf("  %-18s %10.0f ns/snapshot %12.0f bytes/snapshot%n",
+                mode, (double) elapsedNanos / snapshots, (double) allocated / snapshots);
+    }
+}
@@ -0,0 +1,293 @@
+package Memeto_Design_Pattern;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Caretaker that keeps the most recent mementos on the heap and spills older ones to
+// append-only, memory-mapped segment files. Each record is an int header followed by the
+// state as UTF-16 chars; header 0 marks the unwritten tail, -1 a null state, otherwise
+// it holds length + 1.
+class TieredCaretaker implements AutoCloseable {
+    private static final int HEADER_BYTES = Integer.BYTES;
+    private static final int END_OF_SEGMENT = 0;
+    private static final int NULL_STATE = -1;
+
+    private final Path directory;
+    private final int hotCapacity;
+    private final int segmentBytes;
+    // Hot tier as a ring: the oldest hot memento is at hotHead, hotCount are in use
+    private final Memento[] hot;
+    private int hotHead;
+    private int hotCount;
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    // Spilled entry i lives in segment (index[i] >>> 32) at byte offset (int) index[i]
+    private long[] index = new long[1024];
+    private int spilled;
+    private int writePosition;
+
+    // Opens the history stored in the directory, or starts a new one if it is empty
+    public TieredCaretaker(Path directory, int hotCapacity, int segmentBytes) throws IOException {
+        if (hotCapacity < 0 || segmentBytes <= HEADER_BYTES) {
+            throw new IllegalArgumentException("Invalid hot capacity or segment size");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.hotCapacity = hotCapacity;
+        this.hot = new Memento[hotCapacity];
+        this.segmentBytes = segmentBytes;
+        reopen();
+    }
+
+    public void addMemento(Memento memento) {
+        if (hotCapacity == 0) {
+            spill(memento);
+            return;
+        }
+        if (hotCount == hotCapacity) {
+            // Spill before removing, so a failed spill leaves the memento in the hot tier
+            spill(hot[hotHead]);
+            removeOldestHot();
+        }
+        hot[(hotHead + hotCount) % hotCapacity] = memento;
+        hotCount++;
+    }
+
+    public Memento getMemento(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size());
+        }
+        if (position >= spilled) {
+            return hot[(hotHead + position - spilled) % hotCapacity];
+        }
+        long location = index[position];
+        MappedByteBuffer segment = segments.get((int) (location >>> 32));
+        int offset = (int) location;
+        int header = segment.getInt(offset);
+        if (header == NULL_STATE) {
+            return new Memento(null);
+        }
+        // Reads only this record's chars straight out of the mapped segment
+        char[] chars = new char[header - 1];
+        CharBuffer view = segment.duplicate().position(offset + HEADER_BYTES).slice().asCharBuffer();
+        view.get(chars);
+        return new Memento(new String(chars));
+    }
+
+    public int size() {
+        return spilled + hotCount;
+    }
+
+    public int spilledCount() {
+        return spilled;
+    }
+
+    // Spills the hot tier so that a later reopen sees the full history
+    @Override
+    public void close() throws IOException {
+        while (hotCount > 0) {
+            spill(hot[hotHead]);
+            removeOldestHot();
+        }
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    private void removeOldestHot() {
+        hot[hotHead] = null;
+        hotHead = (hotHead + 1) % hotCapacity;
+        hotCount--;
+    }
+
+    private void spill(Memento memento) {
+        String state = memento.getState();
+        int recordBytes = HEADER_BYTES + (state == null ? 0 : state.length() * Character.BYTES);
+        MappedByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        // Keep room for the END_OF_SEGMENT marker after the record
+        if (segment == null || writePosition + recordBytes + HEADER_BYTES > segment.capacity()) {
+            segment = newSegment(recordBytes + HEADER_BYTES);
+            writePosition = 0;
+        }
+        if (state != null) {
+            segment.duplicate().position(writePosition + HEADER_BYTES).slice().asCharBuffer().put(state);
+        }
+        // Marker and header written after the chars, so reopen never indexes a half-written record
+        segment.putInt(writePosition + recordBytes, END_OF_SEGMENT);
+        segment.putInt(writePosition, state == null ? NULL_STATE : state.length() + 1);
+        if (spilled == index.length) {
+            index = Arrays.copyOf(index, index.length * 2);
+        }
+        index[spilled++] = ((long) (segments.size() - 1) << 32) | writePosition;
+        writePosition += recordBytes;
+    }
+
+    private MappedByteBuffer newSegment(int minimumBytes) {
+        Path file = directory.resolve(String.format("segment-%06d.seg", segments.size()));
+        try {
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentBytes, minimumBytes));
+            channels.add(channel);
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create segment " + file, e);
+        }
+    }
+
+    // Rebuilds the offset index by walking record headers; states are not decoded
+    private void reopen() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.seg")) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(Path::toString));
+        for (Path file : files) {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            channels.add(channel);
+            segments.add(segment);
+            int position = 0;
+            while (position + HEADER_BYTES <= segment.capacity()) {
+                int header = segment.getInt(position);
+                long recordBytes = HEADER_BYTES + (header == NULL_STATE ? 0 : (header - 1L) * Character.BYTES);
+                // A corrupt header or a record running past the segment ends it, like an unwritten tail;
+                // the marker is rewritten so later spills never leave the bad bytes after a new record
+                if (header == END_OF_SEGMENT || (header < 1 && header != NULL_STATE)
+                        || position + recordBytes > segment.capacity()) {
+                    segment.putInt(position, END_OF_SEGMENT);
+                    break;
+                }
+                if (spilled == index.length) {
+                    index = Arrays.copyOf(index, index.length * 2);
+                }
+                index[spilled++] = ((long) (segments.size() - 1) << 32) | position;
+                position += (int) recordBytes;
+            }
+            writePosition = position;
+        }
+    }
+}
+
+// Demonstrates reopening a spilled history and benchmarks append and random restore
+public class TieredCaretakerDemo {
+    private static final int SNAPSHOTS = 1_000_000;
+    private static final int STATE_LENGTH = 256;
+    private static final int HOT_CAPACITY = 10_000;
+    private static final int SEGMENT_BYTES = 64 << 20;
+    private static final int RESTORES = 1_000_000;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("tiered-caretaker");
+        try {
+            Originator originator = new Originator();
+            try (TieredCaretaker caretaker = new TieredCaretaker(directory.resolve("demo"), 2, 4096)) {
+                for (int i = 1; i <= 5; i++) {
+                    originator.setState("State #" + i);
+                    caretaker.addMemento(originator.saveStateToMemento());
+                }
+                System.out.println("Spilled to disk: " + caretaker.spilledCount() + " of " + caretaker.size());
+            }
+            try (TieredCaretaker reopened = new TieredCaretaker(directory.resolve("demo"), 2, 4096)) {
+                originator.getStateFromMemento(reopened.getMemento(0));
+                System.out.println("Restored State after reopen: " + originator.getState());
+                originator.getStateFromMemento(reopened.getMemento(4));
+                System.out.println("Restored State after reopen: " + originator.getState());
+            }
+            corruptedHeader(directory.resolve("demo"), originator);
+
+            benchmark(directory.resolve("bench"));
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // Overwrites the fourth record's header with a negative length; reopen keeps the first three
+    // records and appends after them
+    private static void corruptedHeader(Path directory, Originator originator) throws IOException {
+        int recordBytes = Integer.BYTES + "State #1".length() * Character.BYTES;
+        try (FileChannel channel = FileChannel.open(directory.resolve("segment-000000.seg"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, -7), 3L * recordBytes);
+        }
+        try (TieredCaretaker reopened = new TieredCaretaker(directory, 2, 4096)) {
+            System.out.println("Mementos after corrupt header: " + reopened.size());
+            originator.setState("State #6");
+            reopened.addMemento(originator.saveStateToMemento());
+        }
+        try (TieredCaretaker reopened = new TieredCaretaker(directory, 2, 4096)) {
+            originator.getStateFromMemento(reopened.getMemento(reopened.size() - 1));
+            System.out.println("Mementos after append: " + reopened.size() + ", last " + originator.getState());
+        }
+    }
+
+    private static void benchmark(Path directory) throws IOException {
+        Random random = new Random(42);
+        char[] state = new char[STATE_LENGTH];
+        Arrays.fill(state, 'x');
+        String[] states = new String[1024];
+        for (int i = 0; i < states.length; i++) {
+            state[random.nextInt(STATE_LENGTH)] = (char) ('a' + random.nextInt(26));
+            states[i] = new String(state);
+        }
+
+        System.out.println();
+        try (TieredCaretaker caretaker = new TieredCaretaker(directory, HOT_CAPACITY, SEGMENT_BYTES)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < SNAPSHOTS; i++) {
+                caretaker.addMemento(new Memento(states[i & (states.length - 1)]));
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Append:          %,12.0f mementos/s (%d spilled, %d on heap)%n",
+                    SNAPSHOTS / (elapsed / 1e9), caretaker.spilledCount(), caretaker.size() - caretaker.spilledCount());
+
+            long sink = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < RESTORES; i++) {
+                sink += caretaker.getMemento(random.nextInt(caretaker.spilledCount())).getState().length();
+            }
+            elapsed = System.nanoTime() - start;
+            if (sink != (long) RESTORES * STATE_LENGTH) {
+                throw new IllegalStateException("Restored state has the wrong length");
+            }
+            System.out.printf("Random restore:  %,12.0f mementos/s (spilled entries)%n", RESTORES / (elapsed / 1e9));
+
+            int spilled = caretaker.spilledCount();
+            int onHeap = caretaker.size() - spilled;
+            sink = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < RESTORES; i++) {
+                sink += caretaker.getMemento(spilled + random.nextInt(onHeap)).getState().length();
+            }
+            elapsed = System.nanoTime() - start;
+            if (sink != (long) RESTORES * STATE_LENGTH) {
+                throw new IllegalStateException("Restored state has the wrong length");
+            }
+            System.out.printf("Random restore:  %,12.0f mementos/s (hot entries)%n", RESTORES / (elapsed / 1e9));
+        }
+
+        long start = System.nanoTime();
+        try (TieredCaretaker reopened = new TieredCaretaker(directory, HOT_CAPACITY, SEGMENT_BYTES)) {
+            long elapsed = System.nanoTime() - start;
+            System.out.printf("Reopen:          %,12.1f ms for %d mementos%n", elapsed / 1e6, reopened.size());
+        }
+    }
+}
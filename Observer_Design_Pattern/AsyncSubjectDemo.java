@@ -0,0 +1,433 @@
+package Observer_Design_Pattern;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// What an observer queue does when an update arrives and the queue is full
+enum OverflowPolicy {
+    DROP_OLDEST,
+    BLOCK,
+    CONFLATE_TO_LATEST
+}
+
+// Receives the exceptions thrown by Observer.update; called on the observer's delivery thread
+interface ObserverErrorHandler {
+    void onError(Observer observer, String state, RuntimeException error);
+
+    ObserverErrorHandler IGNORE = (observer, state, error) -> {
+    };
+}
+
+// Point-in-time metrics for one observer
+final class ObserverStats {
+    final int queueDepth;
+    final long delivered;
+    final long dropped;
+    final long failed;
+    final long lagNanos;
+
+    ObserverStats(int queueDepth, long delivered, long dropped, long failed, long lagNanos) {
+        this.queueDepth = queueDepth;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.failed = failed;
+        this.lagNanos = lagNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth=%d delivered=%d dropped=%d failed=%d lag=%.1fms",
+                queueDepth, delivered, dropped, failed, lagNanos / 1e6);
+    }
+}
+
+// Bounded per-observer queue, drained by at most one task at a time. Once shut down it drops
+// further updates instead of handing them to the executor.
+final class ObserverQueue implements Runnable {
+    private static final class Pending {
+        final String state;
+        final long enqueuedAt;
+
+        Pending(String state, long enqueuedAt) {
+            this.state = state;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    final Observer observer;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    // Read on every failure, so a handler set after this queue was created still applies
+    private final Supplier<ObserverErrorHandler> errorHandler;
+    private final Deque<Pending> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private boolean scheduled;
+    private boolean closed;
+    private long delivered;
+    private long dropped;
+    private long failed;
+
+    ObserverQueue(Observer observer, int capacity, OverflowPolicy policy, ExecutorService executor, boolean ownsExecutor,
+                  Supplier<ObserverErrorHandler> errorHandler) {
+        this.observer = observer;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.errorHandler = errorHandler;
+    }
+
+    // With mayBlock false a full BLOCK queue drops its oldest update instead of waiting
+    void offer(String state, boolean mayBlock) throws InterruptedException {
+        boolean schedule;
+        lock.lock();
+        try {
+            if (closed) {
+                dropped++;
+                return;
+            }
+            if (queue.size() >= capacity) {
+                OverflowPolicy overflow = policy == OverflowPolicy.BLOCK && !mayBlock ? OverflowPolicy.DROP_OLDEST : policy;
+                switch (overflow) {
+                    case DROP_OLDEST:
+                        queue.pollFirst();
+                        dropped++;
+                        break;
+                    case CONFLATE_TO_LATEST:
+                        dropped += queue.size();
+                        queue.clear();
+                        break;
+                    case BLOCK:
+                        while (queue.size() >= capacity && !closed) {
+                            notFull.await();
+                        }
+                        if (closed) {
+                            dropped++;
+                            return;
+                        }
+                        break;
+                }
+            }
+            queue.addLast(new Pending(state, System.nanoTime()));
+            schedule = !scheduled;
+            scheduled = true;
+        } finally {
+            lock.unlock();
+        }
+        if (schedule) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // The executor was shut down underneath this queue: treat it as closed
+                lock.lock();
+                try {
+                    closed = true;
+                    scheduled = false;
+                    dropped += queue.size();
+                    queue.clear();
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            Pending next;
+            lock.lock();
+            try {
+                next = queue.pollFirst();
+                if (next == null) {
+                    scheduled = false;
+                    return;
+                }
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+            boolean ok = true;
+            try {
+                observer.update(next.state);
+            } catch (RuntimeException e) {
+                // A failing observer must not stop delivery to itself or anyone else
+                ok = false;
+                try {
+                    errorHandler.get().onError(observer, next.state, e);
+                } catch (RuntimeException ignored) {
+                    // A failing handler must not stop delivery either
+                }
+            }
+            lock.lock();
+            try {
+                if (ok) {
+                    delivered++;
+                } else {
+                    failed++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    ObserverStats stats() {
+        lock.lock();
+        try {
+            Pending oldest = queue.peekFirst();
+            long lag = oldest == null ? 0 : System.nanoTime() - oldest.enqueuedAt;
+            return new ObserverStats(queue.size(), delivered, dropped, failed, lag);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Stops accepting updates and wakes publishers blocked on this queue; updates already
+    // queued are still delivered
+    void shutdown() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
+
+// Subject that notifies each observer asynchronously through its own bounded queue, so a
+// slow observer never delays the publisher or the other observers
+class AsyncSubject implements Subject, AutoCloseable {
+    private final Map<Observer, ObserverQueue> queues = new ConcurrentHashMap<>();
+    private final int queueCapacity;
+    private final OverflowPolicy policy;
+    // null means every observer is drained by its own dedicated thread
+    private final ExecutorService sharedPool;
+    private volatile ObserverErrorHandler errorHandler = ObserverErrorHandler.IGNORE;
+    // Written under lifecycleLock, so no observer queue is created after close() has run
+    private final Object lifecycleLock = new Object();
+    private volatile boolean closed;
+    private volatile String state;
+
+    private AsyncSubject(int queueCapacity, OverflowPolicy policy, ExecutorService sharedPool) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        this.queueCapacity = queueCapacity;
+        this.policy = policy;
+        this.sharedPool = sharedPool;
+    }
+
+    // All observers are drained by tasks on the given pool
+    public static AsyncSubject withSharedPool(int queueCapacity, OverflowPolicy policy, ExecutorService pool) {
+        return new AsyncSubject(queueCapacity, policy, pool);
+    }
+
+    // Each observer gets its own thread (JDK 21+ could use a virtual thread per observer instead)
+    public static AsyncSubject withDedicatedThreads(int queueCapacity, OverflowPolicy policy) {
+        return new AsyncSubject(queueCapacity, policy, null);
+    }
+
+    // Applies to every observer, including those already added; failures are counted in stats() either way
+    public void setErrorHandler(ObserverErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    @Override
+    public void addObserver(Observer observer) {
+        synchronized (lifecycleLock) {
+            if (closed) {
+                throw new IllegalStateException("Subject is closed");
+            }
+            Supplier<ObserverErrorHandler> handler = () -> errorHandler;
+            queues.computeIfAbsent(observer, o -> sharedPool != null
+                    ? new ObserverQueue(o, queueCapacity, policy, sharedPool, false, handler)
+                    : new ObserverQueue(o, queueCapacity, policy, Executors.newSingleThreadExecutor(), true, handler));
+        }
+    }
+
+    @Override
+    public void removeObserver(Observer observer) {
+        ObserverQueue queue = queues.remove(observer);
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    // Under BLOCK, an interrupt stops the waiting but not the notification: the interrupted
+    // observer and the remaining ones get the update by dropping their oldest queued one, and
+    // the interrupt flag is restored afterwards
+    @Override
+    public void notifyObservers() {
+        if (closed) {
+            return;
+        }
+        String current = state;
+        boolean interrupted = false;
+        for (ObserverQueue queue : queues.values()) {
+            while (true) {
+                try {
+                    queue.offer(current, !interrupted);
+                    break;
+                } catch (InterruptedException e) {
+                    // Retried without blocking
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void setState(String state) {
+        this.state = state;
+        notifyObservers();
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public Map<Observer, ObserverStats> stats() {
+        Map<Observer, ObserverStats> stats = new LinkedHashMap<>();
+        for (ObserverQueue queue : queues.values()) {
+            stats.put(queue.observer, queue.stats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        synchronized (lifecycleLock) {
+            closed = true;
+        }
+        for (ObserverQueue queue : queues.values()) {
+            queue.shutdown();
+        }
+    }
+}
+
+// Observer that takes a fixed time per update
+class SlowObserver implements Observer {
+    private final String name;
+    private final long delayMillis;
+    private volatile String state;
+
+    public SlowObserver(String name, long delayMillis) {
+        this.name = name;
+        this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public void update(String message) {
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        state = message;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
+
+// Shows that a slow observer no longer holds up the publisher, under each overflow policy
+public class AsyncSubjectDemo {
+    private static final int UPDATES = 200;
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcreteSubject syncSubject = new ConcreteSubject();
+        syncSubject.addObserver(new SlowObserver("slow", 5));
+        long start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            syncSubject.setState("State " + i);
+        }
+        System.out.printf("ConcreteSubject publish time: %.1f ms%n%n", (System.nanoTime() - start) / 1e6);
+
+        for (OverflowPolicy policy : new OverflowPolicy[] {OverflowPolicy.DROP_OLDEST, OverflowPolicy.CONFLATE_TO_LATEST}) {
+            run(AsyncSubject.withDedicatedThreads(16, policy), policy + ", dedicated threads");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        run(AsyncSubject.withSharedPool(16, OverflowPolicy.DROP_OLDEST, pool), "DROP_OLDEST, shared pool");
+        pool.shutdown();
+        // BLOCK keeps every update, so the publisher is throttled to the slowest observer
+        run(AsyncSubject.withDedicatedThreads(16, OverflowPolicy.BLOCK), "BLOCK, dedicated threads");
+
+        System.out.println();
+        try (AsyncSubject subject = AsyncSubject.withDedicatedThreads(16, OverflowPolicy.DROP_OLDEST)) {
+            Observer faulty = new Observer() {
+                @Override
+                public void update(String message) {
+                    throw new IllegalStateException("cannot handle " + message);
+                }
+
+                @Override
+                public String toString() {
+                    return "faulty";
+                }
+            };
+            subject.addObserver(faulty);
+            // Set after addObserver, and still applied to the faulty observer
+            subject.setErrorHandler((observer, state, error) ->
+                    System.out.println("  " + observer + " failed on " + state + ": " + error.getMessage()));
+            subject.setState("State A");
+            TimeUnit.MILLISECONDS.sleep(100);
+            subject.removeObserver(faulty);
+            subject.setState("State B");
+            System.out.println("  after removeObserver, setState still returns normally");
+        }
+        AsyncSubject closed = AsyncSubject.withDedicatedThreads(16, OverflowPolicy.DROP_OLDEST);
+        closed.close();
+        try {
+            closed.addObserver(new SlowObserver("late", 0));
+        } catch (IllegalStateException e) {
+            System.out.println("  addObserver after close: " + e.getMessage());
+        }
+    }
+
+    private static void run(AsyncSubject subject, String label) throws InterruptedException {
+        SlowObserver fast = new SlowObserver("fast", 0);
+        SlowObserver slow = new SlowObserver("slow", 5);
+        subject.addObserver(fast);
+        subject.addObserver(slow);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < UPDATES; i++) {
+            subject.setState("State " + i);
+        }
+        long publishNanos = System.nanoTime() - start;
+
+        System.out.println(label);
+        System.out.printf("  publish time: %.1f ms%n", publishNanos / 1e6);
+        subject.stats().forEach((observer, stats) -> System.out.println("  " + observer + " right after publishing: " + stats));
+        TimeUnit.MILLISECONDS.sleep(200);
+        System.out.println("  slow observer final state: " + slow.getState());
+        subject.close();
+    }
+}
@@ -0,0 +1,316 @@
+package Observer_Design_Pattern;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Observer that opts in to receiving all changes of a window in one call
+interface BatchObserver extends Observer {
+    void updateBatch(List<String> changes);
+}
+
+// Subject that coalesces state changes over a time or count window. Plain observers keep
+// the per-change update(String) behavior; opted-in observers get either the latest state
+// or the batch of changes once per window, on a single flusher thread. A conflated callback
+// that throws goes to the error handler, and the other observers still get the window.
+class ConflatingSubject implements Subject, AutoCloseable {
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+    private final List<Observer> latestObservers = new CopyOnWriteArrayList<>();
+    private final List<BatchObserver> batchObservers = new CopyOnWriteArrayList<>();
+    private final int windowCount;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object lock = new Object();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile ObserverErrorHandler errorHandler = ObserverErrorHandler.IGNORE;
+    private List<String> pendingBatch = new ArrayList<>();
+    private int pendingCount;
+    private volatile String state;
+
+    // A window closes after windowMillis or after windowCount changes, whichever comes first
+    public ConflatingSubject(long windowMillis, int windowCount) {
+        if (windowMillis <= 0 || windowCount <= 0) {
+            throw new IllegalArgumentException("Window must be positive");
+        }
+        this.windowCount = windowCount;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "conflating-subject-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleAtFixedRate(this::scheduledFlush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Called on the flusher thread for each conflated callback that throws
+    public void setErrorHandler(ObserverErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    // Conflated callbacks that threw
+    public long failedCount() {
+        return failed.get();
+    }
+
+    @Override
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    // Receives update(latest) at most once per window
+    public void addLatestObserver(Observer observer) {
+        latestObservers.add(observer);
+    }
+
+    // Receives updateBatch(changes) at most once per window
+    public void addBatchObserver(BatchObserver observer) {
+        batchObservers.add(observer);
+    }
+
+    @Override
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+        latestObservers.remove(observer);
+        batchObservers.remove(observer);
+    }
+
+    @Override
+    public void notifyObservers() {
+        for (Observer observer : observers) {
+            observer.update(state);
+        }
+    }
+
+    public void setState(String state) {
+        this.state = state;
+        notifyObservers();
+        if (latestObservers.isEmpty() && batchObservers.isEmpty()) {
+            return;
+        }
+        boolean windowFull;
+        synchronized (lock) {
+            if (!batchObservers.isEmpty()) {
+                pendingBatch.add(state);
+            }
+            windowFull = ++pendingCount >= windowCount;
+        }
+        if (windowFull && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::scheduledFlush);
+        }
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    // Publishes any pending changes without waiting for the window to close
+    public void flushNow() throws InterruptedException {
+        try {
+            flusher.submit(this::flush).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Flush failed", e.getCause());
+        }
+    }
+
+    // Anything thrown out of a periodic task cancels it for good, so nothing may escape here
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (Throwable t) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+        }
+    }
+
+    private void flush() {
+        flushRequested.set(false);
+        List<String> batch;
+        String latest;
+        synchronized (lock) {
+            if (pendingCount == 0) {
+                return;
+            }
+            batch = pendingBatch;
+            pendingBatch = new ArrayList<>();
+            pendingCount = 0;
+            latest = state;
+        }
+        for (Observer observer : latestObservers) {
+            try {
+                observer.update(latest);
+            } catch (RuntimeException e) {
+                failed(observer, latest, e);
+            }
+        }
+        if (!batch.isEmpty()) {
+            List<String> changes = Collections.unmodifiableList(batch);
+            for (BatchObserver observer : batchObservers) {
+                try {
+                    observer.updateBatch(changes);
+                } catch (RuntimeException e) {
+                    failed(observer, latest, e);
+                }
+            }
+        }
+    }
+
+    private void failed(Observer observer, String state, RuntimeException error) {
+        failed.incrementAndGet();
+        try {
+            errorHandler.onError(observer, state, error);
+        } catch (RuntimeException ignored) {
+            // A failing handler must not stop the remaining observers
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+    }
+}
+
+// Observer that does a fixed amount of work per callback and records the time spent
+class WorkingObserver implements BatchObserver {
+    private static final int WORK = 2_000;
+
+    private long callbacks;
+    private long busyNanos;
+    private long checksum;
+
+    @Override
+    public void update(String message) {
+        long start = System.nanoTime();
+        work(message);
+        busyNanos += System.nanoTime() - start;
+        callbacks++;
+    }
+
+    @Override
+    public void updateBatch(List<String> changes) {
+        long start = System.nanoTime();
+        work(changes.get(changes.size() - 1));
+        busyNanos += System.nanoTime() - start;
+        callbacks++;
+    }
+
+    private void work(String message) {
+        int hash = message.hashCode();
+        for (int i = 0; i < WORK; i++) {
+            hash = hash * 31 + i;
+        }
+        checksum += hash;
+    }
+
+    long callbacks() {
+        return callbacks;
+    }
+
+    long busyNanos() {
+        return busyNanos;
+    }
+
+    long checksum() {
+        return checksum;
+    }
+}
+
+// Compares publisher throughput and observer CPU with and without conflation
+public class ConflatingSubjectDemo {
+    private static final int CHANGES = 200_000;
+    private static final int OBSERVERS = 8;
+
+    public static void main(String[] args) throws InterruptedException {
+        try (ConflatingSubject subject = new ConflatingSubject(50, 1_000)) {
+            subject.addObserver(new ConcreteObserver("Per-change observer"));
+            subject.addLatestObserver(message -> System.out.println("Latest-state observer received: " + message));
+            subject.addBatchObserver(new BatchObserver() {
+                @Override
+                public void update(String message) {
+                }
+
+                @Override
+                public void updateBatch(List<String> changes) {
+                    System.out.println("Batch observer received: " + changes);
+                }
+            });
+            subject.setState("State 1");
+            subject.setState("State 2");
+            subject.setState("State 3");
+            subject.flushNow();
+        }
+
+        // A throwing observer neither skips the others nor stops the time window
+        try (ConflatingSubject subject = new ConflatingSubject(20, 1_000)) {
+            WorkingObserver healthy = new WorkingObserver();
+            subject.addLatestObserver(message -> {
+                throw new IllegalStateException("cannot handle " + message);
+            });
+            subject.addLatestObserver(healthy);
+            for (int window = 0; window < 5; window++) {
+                subject.setState("State " + window);
+                Thread.sleep(40);
+            }
+            System.out.println("Faulty observer failed " + subject.failedCount() + " times, healthy observer received "
+                    + healthy.callbacks() + " windows");
+        }
+
+        System.out.println();
+        System.out.println(CHANGES + " state changes, " + OBSERVERS + " observers");
+        for (int round = 0; round < 2; round++) {
+            withoutConflation();
+            withConflation();
+        }
+    }
+
+    private static void withoutConflation() {
+        ConcreteSubject subject = new ConcreteSubject();
+        List<WorkingObserver> observers = new ArrayList<>();
+        for (int i = 0; i < OBSERVERS; i++) {
+            WorkingObserver observer = new WorkingObserver();
+            observers.add(observer);
+            subject.addObserver(observer);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < CHANGES; i++) {
+            subject.setState("State " + (i & 1023));
+        }
+        report("ConcreteSubject", System.nanoTime() - start, observers);
+    }
+
+    private static void withConflation() throws InterruptedException {
+        List<WorkingObserver> observers = new ArrayList<>();
+        try (ConflatingSubject subject = new ConflatingSubject(5, 10_000)) {
+            for (int i = 0; i < OBSERVERS; i++) {
+                WorkingObserver observer = new WorkingObserver();
+                observers.add(observer);
+                subject.addLatestObserver(observer);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < CHANGES; i++) {
+                subject.setState("State " + (i & 1023));
+            }
+            long elapsed = System.nanoTime() - start;
+            subject.flushNow();
+            report("ConflatingSubject", elapsed, observers);
+        }
+    }
+
+    private static void report(String mode, long elapsedNanos, List<WorkingObserver> observers) {
+        long callbacks = 0;
+        long busy = 0;
+        long checksum = 0;
+        for (WorkingObserver observer : observers) {
+            callbacks += observer.callbacks();
+            busy += observer.busyNanos();
+            checksum += observer.checksum();
+        }
+        System.out.printf("  %-18s %,12.0f changes/s  %,10d callbacks  %8.1f ms observer CPU  (checksum %d)%n",
+                mode, CHANGES / (elapsedNanos / 1e9), callbacks, busy / 1e6, checksum & 0xFF);
+    }
+}
@@ -0,0 +1,333 @@
+package Observer_Design_Pattern;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Observer held through a weak reference; dropped from the registry once collected
+final class WeakObserver extends WeakReference<Observer> implements Observer {
+    WeakObserver(Observer observer, ReferenceQueue<Observer> queue) {
+        super(observer, queue);
+    }
+
+    @Override
+    public void update(String message) {
+        Observer observer = get();
+        if (observer != null) {
+            observer.update(message);
+        }
+    }
+}
+
+// Observer registry tuned for register/unregister while notifications are running.
+// Changes are O(1) appends to a pending log; notifiers iterate an immutable array
+// snapshot, and the snapshot is rebuilt once per batch of changes instead of once per
+// change (as CopyOnWriteArrayList does).
+class ObserverRegistry {
+    private static final Observer[] EMPTY = new Observer[0];
+    private static final int MAX_PENDING = 4_096;
+
+    private static final class Change {
+        final Observer observer;
+        final boolean add;
+
+        Change(Observer observer, boolean add) {
+            this.observer = observer;
+            this.add = add;
+        }
+    }
+
+    private final Queue<Change> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ReferenceQueue<Observer> collected = new ReferenceQueue<>();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile Observer[] snapshot = EMPTY;
+    private volatile long version;
+
+    public void add(Observer observer) {
+        log(new Change(observer, true));
+    }
+
+    // The registry does not keep the observer alive; it is dropped once garbage collected
+    public void addWeak(Observer observer) {
+        add(new WeakObserver(observer, collected));
+    }
+
+    public void remove(Observer observer) {
+        log(new Change(observer, false));
+    }
+
+    // Returns the current observers, applying any pending changes first
+    public Observer[] observers() {
+        if (pendingCount.get() > 0 || collected.poll() != null) {
+            rebuildLock.lock();
+            try {
+                rebuild();
+            } finally {
+                rebuildLock.unlock();
+            }
+        }
+        return snapshot;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    private void log(Change change) {
+        pending.add(change);
+        // Keep the log bounded when notifications are rare; skip if someone else is rebuilding
+        if (pendingCount.incrementAndGet() >= MAX_PENDING && rebuildLock.tryLock()) {
+            try {
+                rebuild();
+            } finally {
+                rebuildLock.unlock();
+            }
+        }
+    }
+
+    // Applies the pending changes in O(snapshot + changes), whatever the mix of adds and removes
+    private void rebuild() {
+        while (collected.poll() != null) {
+            // cleared weak entries are filtered out below
+        }
+        List<Observer> next = new ArrayList<>(snapshot.length + pendingCount.get());
+        Map<Observer, Integer> present = new HashMap<>();
+        for (Observer observer : snapshot) {
+            Observer key = key(observer);
+            if (key != null) {
+                next.add(observer);
+                present.merge(key, 1, Integer::sum);
+            }
+        }
+        // Only apply what was logged before we started, so concurrent churn cannot starve us
+        Map<Observer, Integer> removals = new HashMap<>();
+        for (int i = pendingCount.get(); i > 0; i--) {
+            Change change = pending.poll();
+            pendingCount.decrementAndGet();
+            Observer key = key(change.observer);
+            if (key == null) {
+                continue;
+            }
+            if (change.add) {
+                next.add(change.observer);
+                present.merge(key, 1, Integer::sum);
+            } else if (present.getOrDefault(key, 0) > 0) {
+                present.merge(key, -1, Integer::sum);
+                removals.merge(key, 1, Integer::sum);
+            }
+        }
+        if (!removals.isEmpty()) {
+            // Removes the first occurrences, matching List.remove(Object) semantics
+            List<Observer> kept = new ArrayList<>(next.size());
+            for (Observer observer : next) {
+                Observer key = key(observer);
+                Integer remaining = key == null ? null : removals.get(key);
+                if (remaining == null) {
+                    kept.add(observer);
+                } else if (remaining == 1) {
+                    removals.remove(key);
+                } else {
+                    removals.put(key, remaining - 1);
+                }
+            }
+            next = kept;
+        }
+        snapshot = next.toArray(EMPTY);
+        version++;
+    }
+
+    // Weak entries are matched by their referent; null means the referent was collected
+    private static Observer key(Observer observer) {
+        return observer instanceof WeakObserver ? ((WeakObserver) observer).get() : observer;
+    }
+}
+
+// Subject whose observers can be added and removed from any thread during notification
+class RegistrySubject implements Subject {
+    private final ObserverRegistry registry = new ObserverRegistry();
+    private volatile String state;
+
+    @Override
+    public void addObserver(Observer observer) {
+        registry.add(observer);
+    }
+
+    public void addWeakObserver(Observer observer) {
+        registry.addWeak(observer);
+    }
+
+    @Override
+    public void removeObserver(Observer observer) {
+        registry.remove(observer);
+    }
+
+    @Override
+    public void notifyObservers() {
+        String current = state;
+        for (Observer observer : registry.observers()) {
+            observer.update(current);
+        }
+    }
+
+    public void setState(String state) {
+        this.state = state;
+        notifyObservers();
+    }
+
+    public String getState() {
+        return state;
+    }
+}
+
+// Same subject on a CopyOnWriteArrayList, the naive thread-safe baseline
+class CopyOnWriteSubject implements Subject {
+    private final List<Observer> observers = new CopyOnWriteArrayList<>();
+    private volatile String state;
+
+    @Override
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    @Override
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    @Override
+    public void notifyObservers() {
+        for (Observer observer : observers) {
+            observer.update(state);
+        }
+    }
+
+    public void setState(String state) {
+        this.state = state;
+        notifyObservers();
+    }
+}
+
+// Benchmarks notification and subscription churn running at the same time
+public class ObserverRegistryDemo {
+    private static final int BASE_OBSERVERS = 1_000;
+    private static final int CHURN_THREADS = 2;
+    private static final long DURATION_MILLIS = 1_000;
+
+    private static final Observer NO_OP = message -> { };
+
+    public static void main(String[] args) throws InterruptedException {
+        RegistrySubject subject = new RegistrySubject();
+        Observer strong = new ConcreteObserver("Strong observer");
+        subject.addObserver(strong);
+        subject.addWeakObserver(new ConcreteObserver("Weak observer"));
+        subject.setState("State 1");
+        System.gc();
+        Thread.sleep(100);
+        subject.setState("State 2 (weak observer may have been collected)");
+
+        System.out.println();
+        System.out.println(BASE_OBSERVERS + " observers, " + CHURN_THREADS + " churn threads, "
+                + DURATION_MILLIS + " ms per run");
+        System.out.println("  ConcreteSubject: " + concreteSubjectFails());
+        for (int churnPerSecond : new int[] {0, 10_000, 100_000, 1_000_000}) {
+            System.out.printf("Target churn: %,d registrations/s%n", churnPerSecond);
+            CopyOnWriteSubject copyOnWrite = new CopyOnWriteSubject();
+            run("CopyOnWriteArrayList", copyOnWrite, copyOnWrite::setState, churnPerSecond);
+            RegistrySubject registry = new RegistrySubject();
+            run("ObserverRegistry", registry, registry::setState, churnPerSecond);
+        }
+    }
+
+    private static String concreteSubjectFails() throws InterruptedException {
+        ConcreteSubject subject = new ConcreteSubject();
+        for (int i = 0; i < BASE_OBSERVERS; i++) {
+            subject.addObserver(NO_OP);
+        }
+        Thread churn = new Thread(() -> {
+            for (int i = 0; i < 100_000; i++) {
+                subject.addObserver(NO_OP);
+                subject.removeObserver(NO_OP);
+            }
+        });
+        churn.start();
+        try {
+            while (churn.isAlive()) {
+                subject.setState("tick");
+            }
+            return "no failure observed this time (still unsafe)";
+        } catch (ConcurrentModificationException e) {
+            return "ConcurrentModificationException during churn";
+        } finally {
+            churn.join();
+        }
+    }
+
+    private interface Publisher {
+        void publish(String state);
+    }
+
+    private static void run(String label, Subject subject, Publisher publisher, int churnPerSecond)
+            throws InterruptedException {
+        LongAdder deliveries = new LongAdder();
+        Observer counting = message -> deliveries.increment();
+        for (int i = 0; i < BASE_OBSERVERS; i++) {
+            subject.addObserver(counting);
+        }
+
+        LongAdder churnOps = new LongAdder();
+        LongAdder churnNanos = new LongAdder();
+        long start = System.nanoTime();
+        long deadline = start + DURATION_MILLIS * 1_000_000;
+        // Each churn thread paces itself to its share of the target rate
+        long pairsPerMilli = churnPerSecond / 2 / CHURN_THREADS / 1_000;
+        List<Thread> churners = new ArrayList<>();
+        for (int t = 0; t < CHURN_THREADS && churnPerSecond > 0; t++) {
+            Thread thread = new Thread(() -> {
+                Observer own = message -> { };
+                long done = 0;
+                long now;
+                while ((now = System.nanoTime()) < deadline) {
+                    long due = Math.max(1, (now - start) / 1_000_000 * pairsPerMilli);
+                    if (done >= due) {
+                        LockSupport.parkNanos(100_000);
+                        continue;
+                    }
+                    long before = System.nanoTime();
+                    subject.addObserver(own);
+                    subject.removeObserver(own);
+                    churnNanos.add(System.nanoTime() - before);
+                    churnOps.add(2);
+                    done++;
+                }
+            });
+            churners.add(thread);
+            thread.start();
+        }
+
+        long notifications = 0;
+        while (System.nanoTime() < deadline) {
+            publisher.publish("tick");
+            notifications++;
+        }
+        for (Thread thread : churners) {
+            thread.join();
+        }
+        double seconds = DURATION_MILLIS / 1e3;
+        long ops = churnOps.sum();
+        System.out.printf("  %-22s %,12.0f notifications/s %,14.0f deliveries/s %,12.0f registrations/s %,10.0f ns/registration%n",
+                label, notifications / seconds, deliveries.sum() / seconds, ops / seconds,
+                ops == 0 ? 0.0 : (double) churnNanos.sum() / ops);
+    }
+}
@@ -0,0 +1,306 @@
+package Prototype_Design_Pattern;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// How GraphPrototype.clone(CloneMode) copies the graph
+enum CloneMode {
+    // Shares all nodes; changes through either copy are visible in both
+    SHALLOW,
+    // Copies every node and edge list up front
+    DEEP,
+    // Shares all nodes until one side writes, then copies only the affected page
+    COPY_ON_WRITE
+}
+
+// Prototype for a large, possibly cyclic object graph. Nodes are addressed by index and
+// stored in fixed-size pages; each page remembers which storage owns it, so copy-on-write
+// clones are O(1) and a write copies a single page (plus the page table once).
+//
+// The clone modes are built into this structure rather than offered as an engine for any
+// Prototype: copy-on-write needs every write to go through code that knows about sharing,
+// which an arbitrary Prototype's setters do not. Any number of threads may clone one graph
+// at the same time; writes to a graph, including through its shallow clones, need external
+// synchronization as usual.
+class GraphPrototype implements Prototype {
+    private static final int PAGE_BITS = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int[] NO_EDGES = new int[0];
+
+    private static final class Page {
+        final Object owner;
+        final String[] fields;
+        final int[][] edges;
+
+        Page(Object owner, String[] fields, int[][] edges) {
+            this.owner = owner;
+            this.fields = fields;
+            this.edges = edges;
+        }
+
+        Page copy(Object newOwner, boolean copyEdgeLists) {
+            int[][] edgesCopy = edges.clone();
+            if (copyEdgeLists) {
+                for (int i = 0; i < edgesCopy.length; i++) {
+                    edgesCopy[i] = edgesCopy[i].clone();
+                }
+            }
+            return new Page(newOwner, fields.clone(), edgesCopy);
+        }
+    }
+
+    // Shallow clones share one Storage, so they always see each other's changes
+    private static final class Storage {
+        Page[] pages;
+        Object tableOwner;
+        // Pages and the page table may be written in place only when their owner is this token
+        Object token;
+        // Set by copy-on-write clones instead of replacing token, so concurrent clones only
+        // ever write the same value; the next write here takes a fresh token
+        volatile boolean shared;
+        int size;
+
+        Storage(Page[] pages, Object tableOwner, Object token, int size) {
+            this.pages = pages;
+            this.tableOwner = tableOwner;
+            this.token = token;
+            this.size = size;
+        }
+    }
+
+    private final Storage storage;
+
+    public GraphPrototype() {
+        Object token = new Object();
+        this.storage = new Storage(new Page[0], token, token, 0);
+    }
+
+    private GraphPrototype(Storage storage) {
+        this.storage = storage;
+    }
+
+    public int addNode(String field) {
+        int node = storage.size;
+        if ((node & (PAGE_SIZE - 1)) == 0) {
+            releaseShared();
+            ownTable();
+            storage.pages = Arrays.copyOf(storage.pages, storage.pages.length + 1);
+            int[][] edges = new int[PAGE_SIZE][];
+            Arrays.fill(edges, NO_EDGES);
+            storage.pages[storage.pages.length - 1] = new Page(storage.token, new String[PAGE_SIZE], edges);
+        }
+        storage.size++;
+        writablePage(node).fields[node & (PAGE_SIZE - 1)] = field;
+        return node;
+    }
+
+    public int size() {
+        return storage.size;
+    }
+
+    public String getField(int node) {
+        return page(node).fields[node & (PAGE_SIZE - 1)];
+    }
+
+    public void setField(int node, String field) {
+        writablePage(node).fields[node & (PAGE_SIZE - 1)] = field;
+    }
+
+    // Edges may point anywhere in the graph, including back to an ancestor or to the node itself
+    public void addEdge(int from, int to) {
+        checkNode(to);
+        Page page = writablePage(from);
+        int slot = from & (PAGE_SIZE - 1);
+        // Edge lists are replaced rather than written in place, so copied pages may share them
+        int[] edges = Arrays.copyOf(page.edges[slot], page.edges[slot].length + 1);
+        edges[edges.length - 1] = to;
+        page.edges[slot] = edges;
+    }
+
+    public int edgeCount(int node) {
+        return page(node).edges[node & (PAGE_SIZE - 1)].length;
+    }
+
+    public int edge(int node, int index) {
+        return page(node).edges[node & (PAGE_SIZE - 1)][index];
+    }
+
+    @Override
+    public Prototype clone() {
+        return clone(CloneMode.DEEP);
+    }
+
+    public GraphPrototype clone(CloneMode mode) {
+        switch (mode) {
+            case SHALLOW:
+                return new GraphPrototype(storage);
+            case DEEP:
+                Object token = new Object();
+                Page[] copied = new Page[storage.pages.length];
+                for (int i = 0; i < copied.length; i++) {
+                    copied[i] = storage.pages[i].copy(token, true);
+                }
+                return new GraphPrototype(new Storage(copied, token, token, storage.size));
+            case COPY_ON_WRITE:
+                // Neither side owns the shared pages any more; whichever writes first copies
+                storage.shared = true;
+                return new GraphPrototype(new Storage(storage.pages, storage.tableOwner, new Object(), storage.size));
+            default:
+                throw new IllegalArgumentException("Unknown clone mode: " + mode);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GraphPrototype [nodes=" + storage.size + "]";
+    }
+
+    private Page page(int node) {
+        checkNode(node);
+        return storage.pages[node >>> PAGE_BITS];
+    }
+
+    private Page writablePage(int node) {
+        checkNode(node);
+        releaseShared();
+        int index = node >>> PAGE_BITS;
+        Page page = storage.pages[index];
+        if (page.owner != storage.token) {
+            ownTable();
+            page = page.copy(storage.token, false);
+            storage.pages[index] = page;
+        }
+        return page;
+    }
+
+    // Called before every write: after a copy-on-write clone, stop owning the shared pages
+    private void releaseShared() {
+        if (storage.shared) {
+            storage.token = new Object();
+            storage.shared = false;
+        }
+    }
+
+    private void ownTable() {
+        if (storage.tableOwner != storage.token) {
+            storage.pages = storage.pages.clone();
+            storage.tableOwner = storage.token;
+        }
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= storage.size) {
+            throw new IndexOutOfBoundsException("Node: " + node + ", Size: " + storage.size);
+        }
+    }
+}
+
+// Demonstrates the clone modes and benchmarks time and allocation for each on growing graphs
+public class GraphPrototypeDemo {
+    private static final int ITERATIONS_BUDGET = 20_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        GraphPrototype original = new GraphPrototype();
+        int a = original.addNode("A");
+        int b = original.addNode("B");
+        original.addEdge(a, b);
+        original.addEdge(b, a); // cycle
+
+        GraphPrototype shallow = original.clone(CloneMode.SHALLOW);
+        GraphPrototype deep = original.clone(CloneMode.DEEP);
+        GraphPrototype cow = original.clone(CloneMode.COPY_ON_WRITE);
+        cow.setField(a, "A (changed in copy-on-write clone)");
+        shallow.setField(b, "B (changed in shallow clone)");
+
+        System.out.println("Original:      " + original.getField(a) + ", " + original.getField(b));
+        System.out.println("Deep clone:    " + deep.getField(a) + ", " + deep.getField(b));
+        System.out.println("Copy-on-write: " + cow.getField(a) + ", " + cow.getField(b)
+                + " -> " + cow.getField(cow.edge(cow.edge(a, 0), 0)));
+        concurrentClones(original);
+
+        System.out.println();
+        System.out.printf("%8s %-14s %14s %16s %20s%n", "nodes", "mode", "clone (ns)", "clone (bytes)", "clone+write (ns)");
+        for (int round = 0; round < 2; round++) {
+            for (int nodes : new int[] {10, 1_000, 100_000}) {
+                GraphPrototype graph = randomGraph(nodes);
+                for (CloneMode mode : CloneMode.values()) {
+                    benchmark(graph, mode, round == 1);
+                }
+            }
+        }
+    }
+
+    // Several threads clone one template and each edits its own clone; none may see another's edit
+    private static void concurrentClones(GraphPrototype template) throws InterruptedException {
+        int threads = 4;
+        String expected = template.getField(0);
+        AtomicInteger conflicts = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            String mine = "edited by " + t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    GraphPrototype copy = template.clone(CloneMode.COPY_ON_WRITE);
+                    copy.setField(0, mine);
+                    if (!copy.getField(0).equals(mine) || !template.getField(0).equals(expected)) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        System.out.println("Concurrent copy-on-write clones from " + threads + " threads, conflicts: " + conflicts.get());
+    }
+
+    private static GraphPrototype randomGraph(int nodes) {
+        Random random = new Random(42);
+        GraphPrototype graph = new GraphPrototype();
+        for (int i = 0; i < nodes; i++) {
+            graph.addNode("node-" + i);
+        }
+        for (int i = 0; i < nodes; i++) {
+            for (int e = 0; e < 3; e++) {
+                graph.addEdge(i, random.nextInt(nodes));
+            }
+        }
+        return graph;
+    }
+
+    private static void benchmark(GraphPrototype graph, CloneMode mode, boolean print) {
+        int iterations = Math.max(10, ITERATIONS_BUDGET / graph.size());
+        Random random = new Random(7);
+        long checksum = 0;
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            checksum += graph.clone(mode).size();
+        }
+        long cloneNanos = System.nanoTime() - start;
+        long cloneBytes = allocatedBytes() - allocatedBefore;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            GraphPrototype copy = graph.clone(mode);
+            copy.setField(random.nextInt(copy.size()), "edited");
+            checksum += copy.edgeCount(0);
+        }
+        long writeNanos = System.nanoTime() - start;
+
+        if (print) {
+            System.out.printf("%8d %-14s %14.0f %16d %20.0f%n", graph.size(), mode,
+                    (double) cloneNanos / iterations, cloneBytes / iterations,
+                    (double) writeNanos / iterations + (checksum == 42 ? 1 : 0));
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,344 @@
+package Prototype_Design_Pattern;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+
+// Prototype whose instances can be recycled by PrototypeRegistry. The registry marks an
+// instance while it sits in a pool, so a second retire is caught by reading one field.
+interface RecyclablePrototype extends Prototype {
+    boolean isPooled();
+
+    void setPooled(boolean pooled);
+}
+
+// ConcretePrototype that can be recycled
+class RecyclableConcretePrototype extends ConcretePrototype implements RecyclablePrototype {
+    private boolean pooled;
+
+    public RecyclableConcretePrototype(String field) {
+        super(field);
+    }
+
+    @Override
+    public Prototype clone() {
+        return new RecyclableConcretePrototype(getField());
+    }
+
+    @Override
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    @Override
+    public void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+}
+
+// Registry of named template instances that hands out clones on demand. Retired clones
+// can be returned and are recycled for later requests instead of cloning again. Each pool
+// holds at most maxPooled instances; clones retired beyond that are left to the GC. Recycling
+// needs RecyclablePrototype instances; the pooled flag is only read or written under the pool lock.
+class PrototypeRegistry<T extends Prototype> {
+    // Below this many clones a bulk request is filled on the calling thread
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int DEFAULT_MAX_POOLED = 1 << 16;
+
+    private static final class Entry<T> {
+        final T template;
+        final BiConsumer<T, T> reset;
+        final int maxPooled;
+        // Guarded by pool; bulk calls take the lock once per batch
+        final Deque<T> pool = new ArrayDeque<>();
+
+        Entry(T template, BiConsumer<T, T> reset, int maxPooled) {
+            this.template = template;
+            this.reset = reset;
+            this.maxPooled = maxPooled;
+        }
+
+        // Caller holds the pool lock
+        T poll() {
+            T instance = pool.pollLast();
+            if (instance != null) {
+                ((RecyclablePrototype) instance).setPooled(false);
+            }
+            return instance;
+        }
+
+        // Caller holds the pool lock and has checked the instance with checkRetirable
+        void add(T instance) {
+            if (pool.size() < maxPooled) {
+                ((RecyclablePrototype) instance).setPooled(true);
+                pool.addLast(instance);
+            }
+        }
+
+        // Caller holds the pool lock
+        static RecyclablePrototype checkRetirable(Object instance) {
+            if (!(instance instanceof RecyclablePrototype)) {
+                throw new IllegalArgumentException(instance == null ? "Cannot retire null"
+                        : "Not a RecyclablePrototype: " + instance);
+            }
+            RecyclablePrototype recyclable = (RecyclablePrototype) instance;
+            if (recyclable.isPooled()) {
+                throw new IllegalArgumentException("Instance was already retired: " + instance);
+            }
+            return recyclable;
+        }
+    }
+
+    private final Map<String, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final ForkJoinPool forkJoinPool;
+
+    public PrototypeRegistry() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public PrototypeRegistry(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    // reset copies the template's state onto a retired clone; pass null to disable recycling.
+    // Recycling needs a template whose clones are RecyclablePrototypes.
+    public void register(String name, T template, BiConsumer<T, T> reset) {
+        register(name, template, reset, DEFAULT_MAX_POOLED);
+    }
+
+    public void register(String name, T template, BiConsumer<T, T> reset, int maxPooled) {
+        if (maxPooled < 0) {
+            throw new IllegalArgumentException("maxPooled must not be negative: " + maxPooled);
+        }
+        if (reset != null && !(template.clone() instanceof RecyclablePrototype)) {
+            throw new IllegalArgumentException("Recycling needs RecyclablePrototype clones: " + name);
+        }
+        entries.put(name, new Entry<>(template, reset, maxPooled));
+    }
+
+    public T clone(String name) {
+        Entry<T> entry = entry(name);
+        T recycled = null;
+        if (entry.reset != null) {
+            synchronized (entry.pool) {
+                recycled = entry.poll();
+            }
+        }
+        if (recycled != null) {
+            entry.reset.accept(recycled, entry.template);
+            return recycled;
+        }
+        return copy(entry.template);
+    }
+
+    // Fills target[offset, offset + count) with clones of the named template
+    public void cloneN(String name, T[] target, int offset, int count) {
+        if (offset < 0 || count < 0 || offset + count > target.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + " count=" + count + " length=" + target.length);
+        }
+        Entry<T> entry = entry(name);
+        int filled = 0;
+        if (entry.reset != null) {
+            synchronized (entry.pool) {
+                T recycled;
+                while (filled < count && (recycled = entry.poll()) != null) {
+                    target[offset + filled++] = recycled;
+                }
+            }
+            for (int i = offset; i < offset + filled; i++) {
+                entry.reset.accept(target[i], entry.template);
+            }
+        }
+        int remaining = count - filled;
+        if (remaining >= PARALLEL_THRESHOLD && forkJoinPool.getParallelism() > 1) {
+            forkJoinPool.invoke(new CloneTask<>(entry.template, target, offset + filled, offset + count));
+        } else {
+            fill(entry.template, target, offset + filled, offset + count);
+        }
+    }
+
+    // Throws IllegalArgumentException if the instance is null or already in a pool
+    public void retire(String name, T instance) {
+        if (instance == null) {
+            throw new IllegalArgumentException("Cannot retire null");
+        }
+        Entry<T> entry = entry(name);
+        if (entry.reset != null) {
+            synchronized (entry.pool) {
+                Entry.checkRetirable(instance);
+                entry.add(instance);
+            }
+        }
+    }
+
+    // Returns source[offset, offset + count) to the pool and clears those slots. A null slot,
+    // an instance that is already pooled, or one instance in two slots fails the whole call
+    // with IllegalArgumentException before anything is changed.
+    public void retireAll(String name, T[] source, int offset, int count) {
+        if (offset < 0 || count < 0 || offset + count > source.length) {
+            throw new IndexOutOfBoundsException("offset=" + offset + " count=" + count + " length=" + source.length);
+        }
+        Entry<T> entry = entry(name);
+        if (entry.reset == null) {
+            for (int i = offset; i < offset + count; i++) {
+                if (source[i] == null) {
+                    throw new IllegalArgumentException("Cannot retire null at index " + i);
+                }
+            }
+            Arrays.fill(source, offset, offset + count, null);
+            return;
+        }
+        synchronized (entry.pool) {
+            // Mark every slot first; a mark already set means pooled, or seen earlier in this call
+            for (int i = offset; i < offset + count; i++) {
+                try {
+                    Entry.checkRetirable(source[i]).setPooled(true);
+                } catch (IllegalArgumentException e) {
+                    for (int j = offset; j < i; j++) {
+                        ((RecyclablePrototype) source[j]).setPooled(false);
+                    }
+                    throw e;
+                }
+            }
+            for (int i = offset; i < offset + count; i++) {
+                ((RecyclablePrototype) source[i]).setPooled(false);
+                entry.add(source[i]);
+                source[i] = null;
+            }
+        }
+    }
+
+    public int pooled(String name) {
+        Entry<T> entry = entry(name);
+        synchronized (entry.pool) {
+            return entry.pool.size();
+        }
+    }
+
+    private Entry<T> entry(String name) {
+        Entry<T> entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("No prototype registered as '" + name + "'");
+        }
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Prototype> T copy(T template) {
+        return (T) template.clone();
+    }
+
+    private static <T extends Prototype> void fill(T template, T[] target, int from, int to) {
+        for (int i = from; i < to; i++) {
+            target[i] = copy(template);
+        }
+    }
+
+    // Splits the range in halves until it is small enough to fill sequentially
+    private static final class CloneTask<T extends Prototype> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final T template;
+        private final T[] target;
+        private final int from;
+        private final int to;
+
+        CloneTask(T template, T[] target, int from, int to) {
+            this.template = template;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                fill(template, target, from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new CloneTask<>(template, target, from, middle), new CloneTask<>(template, target, middle, to));
+        }
+    }
+}
+
+// Demonstrates the registry and compares clone throughput with plain new at several batch sizes
+public class PrototypeRegistryDemo {
+    private static final int MAX_BATCH = 10_000_000;
+    private static final long CLONES_PER_RUN = 20_000_000;
+
+    public static void main(String[] args) {
+        PrototypeRegistry<ConcretePrototype> registry = new PrototypeRegistry<>();
+        registry.register("default", new RecyclableConcretePrototype("Default template"),
+                (clone, template) -> clone.setField(template.getField()), MAX_BATCH);
+
+        ConcretePrototype first = registry.clone("default");
+        first.setField("Modified Clone");
+        System.out.println("Clone: " + first);
+        registry.retire("default", first);
+        try {
+            registry.retire("default", first);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Second retire rejected: " + e.getMessage());
+        }
+        try {
+            registry.retireAll("default", new ConcretePrototype[] {new RecyclableConcretePrototype("Other"), null}, 0, 2);
+        } catch (IllegalArgumentException e) {
+            System.out.println("retireAll with a null slot rejected: " + e.getMessage() + "; still pooled: "
+                    + registry.pooled("default"));
+        }
+        System.out.println("Recycled clone: " + registry.clone("default"));
+
+        ConcretePrototype[] batch = new ConcretePrototype[4];
+        registry.cloneN("default", batch, 0, batch.length);
+        System.out.println("Bulk clones: " + batch.length + " x " + batch[0]);
+
+        System.out.println();
+        System.out.println("Parallelism: " + ForkJoinPool.commonPool().getParallelism());
+        System.out.printf("%10s %18s %18s %18s%n", "batch", "new (M/s)", "cloneN (M/s)", "recycled (M/s)");
+        ConcretePrototype[] target = new ConcretePrototype[MAX_BATCH];
+        for (int batchSize : new int[] {1, 100, 10_000, 1_000_000, MAX_BATCH}) {
+            benchmark(registry, target, batchSize);
+        }
+    }
+
+    private static void benchmark(PrototypeRegistry<ConcretePrototype> registry, ConcretePrototype[] target, int batchSize) {
+        long batches = Math.max(1, CLONES_PER_RUN / batchSize);
+        ConcretePrototype template = new ConcretePrototype("Default template");
+
+        long start = System.nanoTime();
+        for (long b = 0; b < batches; b++) {
+            for (int i = 0; i < batchSize; i++) {
+                target[i] = new ConcretePrototype(template.getField());
+            }
+        }
+        double plain = rate(batches * batchSize, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (long b = 0; b < batches; b++) {
+            registry.cloneN("default", target, 0, batchSize);
+        }
+        double bulk = rate(batches * batchSize, System.nanoTime() - start);
+
+        // Retire every clone before the next batch, so requests are served from the pool
+        long elapsed = 0;
+        for (long b = 0; b < batches; b++) {
+            registry.retireAll("default", target, 0, batchSize);
+            start = System.nanoTime();
+            registry.cloneN("default", target, 0, batchSize);
+            elapsed += System.nanoTime() - start;
+        }
+        double recycled = rate(batches * batchSize, elapsed);
+
+        System.out.printf("%10d %18.1f %18.1f %18.1f%n", batchSize, plain, bulk, recycled);
+    }
+
+    private static double rate(long clones, long nanos) {
+        return clones / (nanos / 1e9) / 1e6;
+    }
+}
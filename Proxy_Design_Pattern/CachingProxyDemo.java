@@ -0,0 +1,294 @@
+package Proxy_Design_Pattern;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Subject interface for requests that take a key and return a result
+interface QuerySubject {
+    String request(String key);
+}
+
+// Expensive backend: every call costs a fixed latency
+class RealQueryObject implements QuerySubject {
+    static final AtomicInteger instances = new AtomicInteger();
+
+    private final long latencyMillis;
+    private final LongAdder calls = new LongAdder();
+
+    public RealQueryObject(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        instances.incrementAndGet();
+    }
+
+    @Override
+    public String request(String key) {
+        calls.increment();
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handling " + key, e);
+        }
+        return "result for " + key;
+    }
+
+    public long calls() {
+        return calls.sum();
+    }
+}
+
+// Proxy that creates its backend exactly once, on first use, through the given factory. It
+// caches results with a TTL and a size bound (least recently used entries are evicted first),
+// and lets concurrent callers asking for the same key share a single backend call.
+class CachingProxy implements QuerySubject {
+    private static final int MAX_STRIPES = 16;
+
+    private static final class CacheEntry {
+        final String value;
+        final long expiresAt;
+
+        CacheEntry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Supplier<? extends QuerySubject> backendFactory;
+    private final long ttlNanos;
+    // The cache is split by key hash into access-ordered stripes, each with its own lock and
+    // its share of maxEntries, so hits on different stripes never contend. Eviction is LRU
+    // within a stripe.
+    private final List<Map<String, CacheEntry>> stripes;
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private volatile QuerySubject realObject;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CachingProxy(Supplier<? extends QuerySubject> backendFactory, long ttlMillis, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.backendFactory = backendFactory;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        int stripeCount = Math.min(MAX_STRIPES, maxEntries);
+        stripes = new ArrayList<>(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            // Spread the remainder so the stripe bounds add up to exactly maxEntries
+            int bound = maxEntries / stripeCount + (i < maxEntries % stripeCount ? 1 : 0);
+            stripes.add(new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                    return size() > bound;
+                }
+            });
+        }
+    }
+
+    @Override
+    public String request(String key) {
+        String cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+
+        try {
+            // A previous leader may have filled the cache and left inFlight between our
+            // lookup and putIfAbsent; check again before calling the backend
+            String value = lookup(key);
+            if (value != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                value = realObject().request(key);
+                Map<String, CacheEntry> stripe = stripeFor(key);
+                synchronized (stripe) {
+                    stripe.put(key, new CacheEntry(value, System.nanoTime() + ttlNanos));
+                }
+            }
+            mine.complete(value);
+            return value;
+        } catch (Throwable t) {
+            // Errors too, or coalesced callers would wait on mine forever
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long coalesced() {
+        return coalesced.sum();
+    }
+
+    private Map<String, CacheEntry> stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes.get(Math.floorMod(hash ^ (hash >>> 16), stripes.size()));
+    }
+
+    private String lookup(String key) {
+        Map<String, CacheEntry> stripe = stripeFor(key);
+        synchronized (stripe) {
+            CacheEntry entry = stripe.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.expiresAt > 0) {
+                stripe.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    // Double-checked locking on a volatile field: the factory is called exactly once
+    private QuerySubject realObject() {
+        QuerySubject real = realObject;
+        if (real == null) {
+            synchronized (this) {
+                real = realObject;
+                if (real == null) {
+                    real = backendFactory.get();
+                    realObject = real;
+                }
+            }
+        }
+        return real;
+    }
+
+    private static String await(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
+
+// Concurrent load test comparing the caching proxy with calling the backend directly
+public class CachingProxyDemo {
+    private static final int THREADS = 32;
+    private static final int REQUESTS_PER_THREAD = 500;
+    private static final int KEYS = 2_000;
+    private static final long BACKEND_LATENCY_MILLIS = 2;
+
+    public static void main(String[] args) throws InterruptedException {
+        CachingProxy proxy = new CachingProxy(() -> new RealQueryObject(BACKEND_LATENCY_MILLIS), 60_000, 1_000);
+        System.out.println(proxy.request("user:42"));
+        System.out.println(proxy.request("user:42") + " (from cache)");
+        System.out.println();
+
+        RealQueryObject.instances.set(0);
+        RealQueryObject direct = new RealQueryObject(BACKEND_LATENCY_MILLIS);
+        long directNanos = load(direct);
+        System.out.printf("Direct:        %,6d requests, %,6d backend calls, %7.1f ms%n",
+                THREADS * REQUESTS_PER_THREAD, direct.calls(), directNanos / 1e6);
+
+        RealQueryObject.instances.set(0);
+        AtomicReference<RealQueryObject> backend = new AtomicReference<>();
+        CachingProxy loaded = new CachingProxy(() -> {
+            RealQueryObject real = new RealQueryObject(BACKEND_LATENCY_MILLIS);
+            backend.set(real);
+            return real;
+        }, 60_000, 1_000);
+        long proxyNanos = load(loaded);
+        long requests = (long) THREADS * REQUESTS_PER_THREAD;
+        long backendCalls = backend.get().calls();
+        System.out.printf("Caching proxy: %,6d requests, %,6d backend calls, %7.1f ms%n",
+                requests, backendCalls, proxyNanos / 1e6);
+        System.out.printf("  hit rate %.1f%%, %d coalesced, backend calls reduced by %.1f%%, RealQueryObject instances: %d%n",
+                100.0 * loaded.hits() / requests, loaded.coalesced(),
+                100.0 * (requests - backendCalls) / requests, RealQueryObject.instances.get());
+        if (backendCalls != loaded.misses()) {
+            throw new IllegalStateException("Backend called " + backendCalls + " times for " + loaded.misses() + " misses");
+        }
+        failingBackend();
+    }
+
+    // A backend that throws an Error must not leave coalesced callers waiting forever
+    private static void failingBackend() throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CachingProxy proxy = new CachingProxy(() -> key -> {
+            entered.countDown();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new AssertionError("backend failed for " + key);
+        }, 60_000, 1_000);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> proxy.request("key"), pool);
+        entered.await();
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> proxy.request("key"), pool);
+        CompletableFuture.allOf(leader, follower).handle((result, error) -> null).join();
+        pool.shutdown();
+        System.out.println("Backend Error: leader and " + proxy.coalesced() + " coalesced caller failed, none left waiting");
+    }
+
+    // All threads start together so first calls race, then draw skewed (hot-key heavy) keys
+    private static long load(QuerySubject subject) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            int seed = t;
+            pool.execute(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        double skewed = Math.pow(random.nextDouble(), 3);
+                        subject.request("key:" + (int) (skewed * KEYS));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        return elapsed;
+    }
+}
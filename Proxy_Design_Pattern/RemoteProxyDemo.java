@@ -0,0 +1,403 @@
+package Proxy_Design_Pattern;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Wire format shared by RemoteObjectServer and RemoteProxy. Every frame starts with the
+// request id, so responses can be matched to requests however many are outstanding:
+//   request:  int id, UTF key
+//   response: int id, byte status, UTF result (or error message)
+// UTF is DataOutputStream's encoding: an unsigned short length followed by modified UTF-8.
+final class RemoteFrames {
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+    static final int BUFFER_SIZE = 64 * 1024;
+    // Largest string writeUTF accepts, in encoded bytes
+    static final int MAX_UTF_BYTES = 0xFFFF;
+
+    private RemoteFrames() {
+    }
+
+    // Encoded length in writeUTF's modified UTF-8, where '\u0000' takes two bytes
+    static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        return length;
+    }
+
+    // Checked before a frame's id is written, so writeUTF cannot fail halfway through a frame
+    static boolean fits(String value) {
+        return value.length() <= MAX_UTF_BYTES / 3 || utfLength(value) <= MAX_UTF_BYTES;
+    }
+}
+
+// Serves a QuerySubject over a loopback socket. Requests on one connection are handled in
+// order; responses are buffered and flushed only once no further request is waiting to be
+// read, so a pipelined burst of requests is answered with one write.
+class RemoteObjectServer implements AutoCloseable {
+    private final QuerySubject realObject;
+    private final ServerSocket serverSocket;
+    private final List<Socket> connections = new ArrayList<>();
+    private final Thread acceptor;
+
+    public RemoteObjectServer(QuerySubject realObject) throws IOException {
+        this.realObject = realObject;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::acceptLoop, "remote-object-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public InetSocketAddress address() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        synchronized (connections) {
+            for (Socket socket : connections) {
+                socket.close();
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                synchronized (connections) {
+                    connections.add(socket);
+                }
+                Thread handler = new Thread(() -> serve(socket), "remote-object-connection");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } catch (IOException e) {
+            // Server socket closed
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), RemoteFrames.BUFFER_SIZE));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), RemoteFrames.BUFFER_SIZE))) {
+            while (true) {
+                int id = in.readInt();
+                String key = in.readUTF();
+                byte status;
+                String payload;
+                try {
+                    payload = realObject.request(key);
+                    status = RemoteFrames.OK;
+                } catch (RuntimeException e) {
+                    payload = String.valueOf(e.getMessage());
+                    status = RemoteFrames.ERROR;
+                }
+                if (!RemoteFrames.fits(payload)) {
+                    payload = status == RemoteFrames.OK ? "Result too long for one frame" : "Error message too long for one frame";
+                    status = RemoteFrames.ERROR;
+                }
+                out.writeInt(id);
+                out.writeByte(status);
+                out.writeUTF(payload);
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Client disconnected or server closed
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
+
+// Remote proxy: looks like a local QuerySubject but forwards each request over one socket
+// connection to a RemoteObjectServer. Up to maxInFlight requests may be outstanding at once
+// (pipelining). With batching on, a writer thread drains every request queued so far into a
+// single buffered write and flush; with it off, each caller writes and flushes its own frame.
+class RemoteProxy implements QuerySubject, AutoCloseable {
+    private static final int MAX_BATCH = 256;
+
+    private static final class Outgoing {
+        final int id;
+        final String key;
+
+        Outgoing(int id, String key) {
+            this.id = id;
+            this.key = key;
+        }
+    }
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final boolean batching;
+    private final Semaphore inFlight;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<Outgoing> outgoing = new LinkedBlockingQueue<>();
+    private final Thread reader;
+    private final Thread writer;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private volatile IOException failure;
+
+    public RemoteProxy(InetSocketAddress address, int maxInFlight, boolean batching) throws IOException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+        }
+        this.socket = new Socket(address.getAddress(), address.getPort());
+        socket.setTcpNoDelay(true);
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), RemoteFrames.BUFFER_SIZE));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), RemoteFrames.BUFFER_SIZE));
+        this.batching = batching;
+        this.inFlight = new Semaphore(maxInFlight);
+
+        this.reader = new Thread(this::readLoop, "remote-proxy-reader");
+        reader.setDaemon(true);
+        reader.start();
+        if (batching) {
+            this.writer = new Thread(this::writeLoop, "remote-proxy-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            this.writer = null;
+        }
+    }
+
+    // Throws IllegalArgumentException for a key longer than one frame can carry
+    @Override
+    public String request(String key) {
+        if (!RemoteFrames.fits(key)) {
+            throw new IllegalArgumentException("Key longer than " + RemoteFrames.MAX_UTF_BYTES + " UTF-8 bytes");
+        }
+        inFlight.acquireUninterruptibly();
+        int id = nextId.getAndIncrement();
+        CompletableFuture<String> response = new CompletableFuture<>();
+        pending.put(id, response);
+        if (failure != null) {
+            // The reader may have failed everything pending before this request was added
+            fail(failure);
+        } else if (batching) {
+            outgoing.add(new Outgoing(id, key));
+        } else {
+            try {
+                synchronized (out) {
+                    write(id, key);
+                    out.flush();
+                    flushes.increment();
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        return await(response);
+    }
+
+    // Requests written to the socket
+    public long sent() {
+        return sent.sum();
+    }
+
+    // Socket writes; sent() / flushes() is the average batch size
+    public long flushes() {
+        return flushes.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.interrupt();
+        }
+        socket.close();
+    }
+
+    private void write(int id, String key) throws IOException {
+        out.writeInt(id);
+        out.writeUTF(key);
+        sent.increment();
+    }
+
+    private void writeLoop() {
+        List<Outgoing> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                batch.add(outgoing.take());
+                outgoing.drainTo(batch, MAX_BATCH - 1);
+                synchronized (out) {
+                    for (Outgoing request : batch) {
+                        write(request.id, request.key);
+                    }
+                    out.flush();
+                    flushes.increment();
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (true) {
+                int id = in.readInt();
+                byte status = in.readByte();
+                String payload = in.readUTF();
+                CompletableFuture<String> response = pending.remove(id);
+                if (response == null) {
+                    // fail() already removed it and released its permit
+                    continue;
+                }
+                inFlight.release();
+                if (status == RemoteFrames.OK) {
+                    response.complete(payload);
+                } else {
+                    response.completeExceptionally(new IllegalStateException("Remote error: " + payload));
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    // Fails every outstanding request; later requests fail immediately
+    private void fail(IOException cause) {
+        failure = cause;
+        for (Integer id : pending.keySet()) {
+            CompletableFuture<String> response = pending.remove(id);
+            if (response != null) {
+                inFlight.release();
+                response.completeExceptionally(new UncheckedIOException("Connection to remote object lost", cause));
+            }
+        }
+    }
+
+    private static String await(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
+
+// Stands up a loopback server and compares latency and throughput with pipelining and
+// batching turned off and on
+public class RemoteProxyDemo {
+    private static final int THREADS = 32;
+    private static final int REQUESTS_PER_THREAD = 5_000;
+    private static final int ROUNDS = 2;
+
+    public static void main(String[] args) throws Exception {
+        QuerySubject realObject = key -> {
+            if (key.isEmpty()) {
+                throw new IllegalArgumentException("Empty key");
+            }
+            return "result for " + key;
+        };
+
+        try (RemoteObjectServer server = new RemoteObjectServer(realObject)) {
+            try (RemoteProxy proxy = new RemoteProxy(server.address(), 16, true)) {
+                System.out.println(proxy.request("user:42"));
+                try {
+                    proxy.request("");
+                } catch (IllegalStateException e) {
+                    System.out.println(e.getMessage());
+                }
+                try {
+                    proxy.request("k".repeat(RemoteFrames.MAX_UTF_BYTES + 1));
+                } catch (IllegalArgumentException e) {
+                    System.out.println(e.getMessage());
+                }
+                System.out.println(proxy.request("user:43") + " (connection still in sync)");
+            }
+
+            System.out.println();
+            System.out.printf("%-26s %12s %12s %12s %12s%n", "mode", "req/s", "mean (us)", "p99 (us)", "batch size");
+            for (int round = 1; round <= ROUNDS; round++) {
+                boolean print = round == ROUNDS;
+                benchmark(server, "one at a time", 1, false, print);
+                benchmark(server, "pipelined (64)", 64, false, print);
+                benchmark(server, "pipelined (64) + batched", 64, true, print);
+            }
+        }
+    }
+
+    private static void benchmark(RemoteObjectServer server, String mode, int maxInFlight, boolean batching,
+                                  boolean print) throws Exception {
+        long[] latencies = new long[THREADS * REQUESTS_PER_THREAD];
+        long elapsed;
+        try (RemoteProxy proxy = new RemoteProxy(server.address(), maxInFlight, batching)) {
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(THREADS);
+            for (int t = 0; t < THREADS; t++) {
+                int offset = t * REQUESTS_PER_THREAD;
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                            long begin = System.nanoTime();
+                            proxy.request("key:" + i);
+                            latencies[offset + i] = System.nanoTime() - begin;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            done.await();
+            elapsed = System.nanoTime() - begin;
+            pool.shutdown();
+
+            if (print) {
+                Arrays.sort(latencies);
+                double mean = Arrays.stream(latencies).average().orElse(0);
+                System.out.printf("%-26s %,12.0f %12.1f %12.1f %12.1f%n", mode, latencies.length / (elapsed / 1e9),
+                        mean / 1e3, latencies[(int) (latencies.length * 0.99)] / 1e3,
+                        (double) proxy.sent() / proxy.flushes());
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package State_Design_Pattern;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Point-in-time metrics for one shard
+final class ShardStats {
+    final int shard;
+    final long processed;
+    final long rejected;
+    final long queueDepth;
+    final long peakQueueDepth;
+
+    ShardStats(int shard, long processed, long rejected, long queueDepth, long peakQueueDepth) {
+        this.shard = shard;
+        this.processed = processed;
+        this.rejected = rejected;
+        this.queueDepth = queueDepth;
+        this.peakQueueDepth = peakQueueDepth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("shard %d: processed=%,d rejected=%,d queued=%,d peak queued=%,d",
+                shard, processed, rejected, queueDepth, peakQueueDepth);
+    }
+}
+
+// Runs a large number of int-encoded state machines over a shared TransitionTable. Machine m
+// belongs to shard m % shards, and each shard is a single thread that owns its machines'
+// column of states outright, so no machine is ever touched by two threads and no machine state
+// is locked. close() applies every event already submitted and rejects later submits.
+class ShardedStateMachines implements AutoCloseable {
+    // Queued after a shard's last batch by close(); the shard stops when it takes it
+    private static final EventBatch STOP = new EventBatch(0);
+
+    private static final class EventBatch {
+        final int[] slots;
+        final int[] events;
+        int size;
+
+        EventBatch(int capacity) {
+            this.slots = new int[capacity];
+            this.events = new int[capacity];
+        }
+    }
+
+    private final class Shard implements Runnable {
+        final int index;
+        // Columnar store: the state of machine (slot * shards + index) is states[slot]
+        final int[] states;
+        final BlockingQueue<EventBatch> queue;
+        final AtomicLong queued = new AtomicLong();
+        final AtomicLong peakQueued = new AtomicLong();
+        // Written only by the shard thread; the release store publishes its state writes
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final Thread thread;
+
+        Shard(int index, int machines, int initial, int queueCapacity) {
+            this.index = index;
+            this.states = new int[machines];
+            Arrays.fill(states, initial);
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "state-shard-" + index);
+            thread.setDaemon(true);
+        }
+
+        void enqueue(EventBatch batch) {
+            long depth = queued.addAndGet(batch.size);
+            peakQueued.accumulateAndGet(depth, Math::max);
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                queued.addAndGet(-batch.size);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while submitting events", e);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    EventBatch batch = queue.take();
+                    if (batch == STOP) {
+                        return;
+                    }
+                    int failures = 0;
+                    for (int i = 0; i < batch.size; i++) {
+                        int slot = batch.slots[i];
+                        try {
+                            states[slot] = table.next(states[slot], batch.events[i]);
+                        } catch (IllegalStateException | IllegalArgumentException e) {
+                            failures++;
+                        }
+                    }
+                    if (failures > 0) {
+                        rejected.addAndGet(failures);
+                    }
+                    // processed first: once awaitIdle sees queued drop, processed already counts the batch
+                    processed.lazySet(processed.get() + batch.size);
+                    queued.addAndGet(-batch.size);
+                }
+            } catch (InterruptedException e) {
+                // Only close() stops a shard, through STOP; an outside interrupt ends it early
+            }
+        }
+
+        void stop() throws InterruptedException {
+            queue.put(STOP);
+        }
+    }
+
+    private final TransitionTable table;
+    private final int machines;
+    private final Shard[] shards;
+    // Submitters hold the read lock while enqueuing, so close() can wait for them and then know
+    // that nothing is queued after a shard's STOP
+    private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    public ShardedStateMachines(TransitionTable table, int machines, int initial, int shardCount, int queueCapacity) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        if (machines < 0) {
+            throw new IllegalArgumentException("machines must not be negative: " + machines);
+        }
+        table.checkState(initial);
+        this.table = table;
+        this.machines = machines;
+        this.shards = new Shard[shardCount];
+        for (int s = 0; s < shardCount; s++) {
+            shards[s] = new Shard(s, (machines - s + shardCount - 1) / shardCount, initial, queueCapacity);
+        }
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    public void submit(int machine, int event) {
+        checkMachine(machine);
+        Shard shard = shards[machine % shards.length];
+        EventBatch batch = new EventBatch(1);
+        batch.slots[0] = machine / shards.length;
+        batch.events[0] = event;
+        batch.size = 1;
+        submitLock.readLock().lock();
+        try {
+            checkOpen();
+            shard.enqueue(batch);
+        } finally {
+            submitLock.readLock().unlock();
+        }
+    }
+
+    // Splits events[offset, offset + count) by shard and hands each shard one batch. Events
+    // for the same machine from one caller are applied in submission order.
+    public void submitBatch(int[] machineIds, int[] events, int offset, int count) {
+        int shardCount = shards.length;
+        int[] perShard = new int[shardCount];
+        for (int i = offset; i < offset + count; i++) {
+            checkMachine(machineIds[i]);
+            perShard[machineIds[i] % shardCount]++;
+        }
+        EventBatch[] batches = new EventBatch[shardCount];
+        for (int s = 0; s < shardCount; s++) {
+            if (perShard[s] > 0) {
+                batches[s] = new EventBatch(perShard[s]);
+            }
+        }
+        for (int i = offset; i < offset + count; i++) {
+            EventBatch batch = batches[machineIds[i] % shardCount];
+            batch.slots[batch.size] = machineIds[i] / shardCount;
+            batch.events[batch.size++] = events[i];
+        }
+        submitLock.readLock().lock();
+        try {
+            checkOpen();
+            for (int s = 0; s < shardCount; s++) {
+                if (batches[s] != null) {
+                    shards[s].enqueue(batches[s]);
+                }
+            }
+        } finally {
+            submitLock.readLock().unlock();
+        }
+    }
+
+    // Waits until every event submitted before this call has been applied
+    public void awaitIdle() throws InterruptedException {
+        for (Shard shard : shards) {
+            while (shard.queued.get() > 0) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    // Exact once the machine's shard is idle; otherwise may lag behind queued events
+    public int state(int machine) {
+        checkMachine(machine);
+        Shard shard = shards[machine % shards.length];
+        shard.processed.get(); // acquire: pairs with the shard's release store
+        return shard.states[machine / shards.length];
+    }
+
+    public ShardStats[] stats() {
+        ShardStats[] stats = new ShardStats[shards.length];
+        for (int s = 0; s < shards.length; s++) {
+            Shard shard = shards[s];
+            stats[s] = new ShardStats(s, shard.processed.get(), shard.rejected.get(),
+                    Math.max(0, shard.queued.get()), shard.peakQueued.get());
+        }
+        return stats;
+    }
+
+    public long processed() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.processed.get();
+        }
+        return total;
+    }
+
+    // Rejects further submits, then waits for the shards to apply every event already
+    // submitted. If interrupted, stops waiting and keeps the interrupt flag set; the daemon
+    // shard threads still finish the queued events.
+    @Override
+    public void close() {
+        submitLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            submitLock.writeLock().unlock();
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.stop();
+            }
+            for (Shard shard : shards) {
+                shard.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Caller holds the read lock
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("State machines are closed");
+        }
+    }
+
+    private void checkMachine(int machine) {
+        if (machine < 0 || machine >= machines) {
+            throw new IndexOutOfBoundsException("Machine: " + machine + ", Machines: " + machines);
+        }
+    }
+}
+
+// Drives millions of machines from several producer threads, batched and one event at a time
+public class ShardedStateMachinesDemo {
+    private static final int MACHINES = 4_000_000;
+    private static final int SHARDS = 4;
+    private static final int PRODUCERS = 4;
+    private static final int BATCH = 1_024;
+    private static final int REQUESTS_PER_MACHINE = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        TransitionTable table = new TransitionTable(2, 2,
+                new int[] {TransitionTableDemo.STATE_A, TransitionTableDemo.REQUEST, TransitionTableDemo.STATE_B},
+                new int[] {TransitionTableDemo.STATE_B, TransitionTableDemo.REQUEST, TransitionTableDemo.STATE_A},
+                new int[] {TransitionTableDemo.STATE_A, TransitionTableDemo.RESET, TransitionTableDemo.STATE_A},
+                new int[] {TransitionTableDemo.STATE_B, TransitionTableDemo.RESET, TransitionTableDemo.STATE_A});
+
+        closeDrains(table);
+
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+        for (int round = 1; round <= 2; round++) {
+            boolean print = round == 2;
+            run(table, true, MACHINES, print);
+            run(table, false, MACHINES / 8, print);
+        }
+    }
+
+    // close() applies the events still queued and rejects any submitted afterwards
+    private static void closeDrains(TransitionTable table) {
+        ShardedStateMachines runtime = new ShardedStateMachines(table, 1_000, TransitionTableDemo.STATE_A, SHARDS, 16);
+        for (int m = 0; m < 1_000; m++) {
+            runtime.submit(m, TransitionTableDemo.REQUEST);
+        }
+        runtime.close();
+        System.out.println("Closed with events queued: " + runtime.processed() + " of 1000 applied");
+        try {
+            runtime.submit(0, TransitionTableDemo.REQUEST);
+        } catch (IllegalStateException e) {
+            System.out.println("Submit after close: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
+    // Each producer owns a contiguous range of machines and sends every machine an odd number
+    // of REQUEST events in shuffled order, so every machine must end in STATE_B
+    private static void run(TransitionTable table, boolean batched, int machines, boolean print) throws InterruptedException {
+        try (ShardedStateMachines runtime = new ShardedStateMachines(table, machines, TransitionTableDemo.STATE_A, SHARDS, 1_024)) {
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(PRODUCERS);
+            int perProducer = machines / PRODUCERS;
+            for (int p = 0; p < PRODUCERS; p++) {
+                int first = p * perProducer;
+                int last = p == PRODUCERS - 1 ? machines : first + perProducer;
+                Thread producer = new Thread(() -> {
+                    int[] ids = shuffledIds(first, last, first);
+                    int[] machineIds = new int[BATCH];
+                    int[] events = new int[BATCH];
+                    try {
+                        start.await();
+                        for (int r = 0; r < REQUESTS_PER_MACHINE; r++) {
+                            for (int i = 0; i < ids.length; i += BATCH) {
+                                int count = Math.min(BATCH, ids.length - i);
+                                if (batched) {
+                                    System.arraycopy(ids, i, machineIds, 0, count);
+                                    Arrays.fill(events, 0, count, TransitionTableDemo.REQUEST);
+                                    runtime.submitBatch(machineIds, events, 0, count);
+                                } else {
+                                    for (int j = i; j < i + count; j++) {
+                                        runtime.submit(ids[j], TransitionTableDemo.REQUEST);
+                                    }
+                                }
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+                producer.start();
+            }
+
+            long begin = System.nanoTime();
+            start.countDown();
+            done.await();
+            runtime.awaitIdle();
+            long elapsed = System.nanoTime() - begin;
+
+            for (int m = 0; m < machines; m++) {
+                if (runtime.state(m) != TransitionTableDemo.STATE_B) {
+                    throw new IllegalStateException("Machine " + m + " ended in state " + runtime.state(m));
+                }
+            }
+            if (print) {
+                System.out.println();
+                System.out.printf("%s: %,d machines, %,d events, %,.0f events/s%n", batched ? "Batched" : "One event per submit",
+                        machines, runtime.processed(), runtime.processed() / (elapsed / 1e9));
+                for (ShardStats stats : runtime.stats()) {
+                    System.out.println("  " + stats);
+                }
+            }
+        }
+    }
+
+    private static int[] shuffledIds(int first, int last, long seed) {
+        int[] ids = new int[last - first];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = first + i;
+        }
+        Random random = new Random(seed);
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = ids[i];
+            ids[i] = ids[j];
+            ids[j] = swap;
+        }
+        return ids;
+    }
+}
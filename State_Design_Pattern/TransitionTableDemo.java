@@ -0,0 +1,267 @@
+package State_Design_Pattern;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+// Immutable transition table indexed by (state, event). States and events are small ints;
+// the next state for a pair is one array read, and a missing transition is rejected.
+final class TransitionTable {
+    private static final int NONE = -1;
+
+    private final int stateCount;
+    private final int eventCount;
+    private final int[] next;
+
+    // Each transition is {from, event, to}
+    TransitionTable(int stateCount, int eventCount, int[]... transitions) {
+        this.stateCount = stateCount;
+        this.eventCount = eventCount;
+        this.next = new int[stateCount * eventCount];
+        Arrays.fill(next, NONE);
+        for (int[] transition : transitions) {
+            int from = transition[0];
+            int event = transition[1];
+            int to = transition[2];
+            checkState(from);
+            checkEvent(event);
+            checkState(to);
+            next[from * eventCount + event] = to;
+        }
+    }
+
+    int stateCount() {
+        return stateCount;
+    }
+
+    int eventCount() {
+        return eventCount;
+    }
+
+    // The int-encoded mode: callers keep the state as an int and never touch a State object
+    int next(int state, int event) {
+        if (Integer.compareUnsigned(state, stateCount) >= 0) {
+            throw new IllegalArgumentException("Unknown state: " + state);
+        }
+        if (Integer.compareUnsigned(event, eventCount) >= 0) {
+            throw new IllegalArgumentException("Unknown event: " + event);
+        }
+        int to = next[state * eventCount + event];
+        if (to == NONE) {
+            throw new IllegalStateException("No transition from state " + state + " on event " + event);
+        }
+        return to;
+    }
+
+    boolean hasTransition(int state, int event) {
+        checkState(state);
+        checkEvent(event);
+        return next[state * eventCount + event] != NONE;
+    }
+
+    void checkState(int state) {
+        if (state < 0 || state >= stateCount) {
+            throw new IllegalArgumentException("Unknown state: " + state);
+        }
+    }
+
+    void checkEvent(int event) {
+        if (event < 0 || event >= eventCount) {
+            throw new IllegalArgumentException("Unknown event: " + event);
+        }
+    }
+}
+
+// What a state does when the machine enters it. Unlike State.handleRequest it does not pick
+// the next state; the transition table does that.
+interface StateBehavior {
+    void onEnter(int event);
+}
+
+// The shared State instance for one state of a StateMachine. It holds its row of the table as
+// direct references to the next states' shared instances, so handleRequest moves the Context
+// without allocating and without going back to the table.
+final class TableState implements State {
+    private final StateMachine machine;
+    final int index;
+    final StateBehavior behavior;
+    // Next state by event; null where the table has no transition
+    TableState[] next;
+
+    TableState(StateMachine machine, int index, StateBehavior behavior) {
+        this.machine = machine;
+        this.index = index;
+        this.behavior = behavior;
+    }
+
+    @Override
+    public void handleRequest(Context context) {
+        machine.transition(context, this);
+    }
+}
+
+// Engine around a Context whose states are one shared TableState per table row, created up
+// front. fire(event) goes through Context.request(), like the classic pattern, but the table
+// picks the next state and the Context is moved to its shared instance, whose behavior then
+// runs. Not thread-safe, like Context.
+class StateMachine {
+    private final TransitionTable table;
+    private final TableState[] states;
+    private final Context context;
+    // Event being fired, read by the current state's handleRequest
+    private int event;
+    private int current;
+
+    public StateMachine(TransitionTable table, StateBehavior[] behaviors, int initial) {
+        if (behaviors.length != table.stateCount()) {
+            throw new IllegalArgumentException("Expected " + table.stateCount() + " behaviors, got " + behaviors.length);
+        }
+        table.checkState(initial);
+        this.table = table;
+        this.states = new TableState[behaviors.length];
+        for (int i = 0; i < behaviors.length; i++) {
+            states[i] = new TableState(this, i, behaviors[i]);
+        }
+        for (TableState state : states) {
+            state.next = new TableState[table.eventCount()];
+            for (int event = 0; event < table.eventCount(); event++) {
+                if (table.hasTransition(state.index, event)) {
+                    state.next[event] = states[table.next(state.index, event)];
+                }
+            }
+        }
+        this.current = initial;
+        this.context = new Context(states[initial]);
+    }
+
+    public void fire(int event) {
+        table.checkEvent(event);
+        this.event = event;
+        context.request();
+    }
+
+    public State state() {
+        return states[current];
+    }
+
+    public int stateIndex() {
+        return current;
+    }
+
+    void transition(Context context, TableState from) {
+        TableState to = from.next[event];
+        if (to == null) {
+            throw new IllegalStateException("No transition from state " + from.index + " on event " + event);
+        }
+        current = to.index;
+        context.setState(to);
+        to.behavior.onEnter(event);
+    }
+}
+
+// Same transitions as ConcreteStateA/B with a counter in place of the console output, so the
+// benchmark measures the cost of allocating a new state on every transition rather than printing
+class AllocatingStateA implements State {
+    static long handled;
+
+    @Override
+    public void handleRequest(Context context) {
+        handled++;
+        context.setState(new AllocatingStateB());
+    }
+}
+
+class AllocatingStateB implements State {
+    @Override
+    public void handleRequest(Context context) {
+        AllocatingStateA.handled++;
+        context.setState(new AllocatingStateA());
+    }
+}
+
+// Runs the StateDemo machine from a transition table and compares transitions per second and
+// allocation with the allocating Context implementation
+public class TransitionTableDemo {
+    static final int STATE_A = 0;
+    static final int STATE_B = 1;
+    static final int REQUEST = 0;
+    static final int RESET = 1;
+
+    private static final int TRANSITIONS = 100_000_000;
+    private static final int ROUNDS = 3;
+
+    private static volatile int sink;
+
+    public static void main(String[] args) {
+        TransitionTable table = new TransitionTable(2, 2,
+                new int[] {STATE_A, REQUEST, STATE_B},
+                new int[] {STATE_B, REQUEST, STATE_A},
+                new int[] {STATE_A, RESET, STATE_A},
+                new int[] {STATE_B, RESET, STATE_A});
+        StateMachine machine = new StateMachine(table, new StateBehavior[] {
+                event -> System.out.println("Entered state A on event " + event),
+                event -> System.out.println("Entered state B on event " + event)}, STATE_A);
+        for (int event : new int[] {REQUEST, REQUEST, REQUEST, RESET}) {
+            machine.fire(event);
+        }
+        try {
+            table.next(2, REQUEST);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+
+        System.out.println();
+        System.out.printf("%-28s %16s %18s%n", "implementation", "transitions/s", "bytes/transition");
+        for (int round = 1; round <= ROUNDS; round++) {
+            boolean print = round == ROUNDS;
+            // Both run one state behavior per request and count it, so only the allocation differs
+            report("Context (new state each)", print, () -> {
+                AllocatingStateA.handled = 0;
+                Context context = new Context(new AllocatingStateA());
+                for (int i = 0; i < TRANSITIONS; i++) {
+                    context.request();
+                }
+                sink = context.hashCode();
+                check(AllocatingStateA.handled);
+            });
+            report("StateMachine (singletons)", print, () -> {
+                long[] handled = new long[1];
+                StateBehavior count = event -> handled[0]++;
+                StateMachine tableMachine = new StateMachine(table, new StateBehavior[] {count, count}, STATE_A);
+                for (int i = 0; i < TRANSITIONS; i++) {
+                    tableMachine.fire(REQUEST);
+                }
+                sink = tableMachine.stateIndex();
+                check(handled[0]);
+            });
+            report("int-encoded", print, () -> {
+                int state = STATE_A;
+                for (int i = 0; i < TRANSITIONS; i++) {
+                    state = table.next(state, REQUEST);
+                }
+                sink = state;
+            });
+        }
+    }
+
+    private static void check(long handled) {
+        if (handled != TRANSITIONS) {
+            throw new IllegalStateException("Ran " + handled + " behaviors for " + TRANSITIONS + " requests");
+        }
+    }
+
+    private static void report(String name, boolean print, Runnable run) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        run.run();
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        if (print) {
+            System.out.printf("%-28s %,16.0f %18.2f%n", name, TRANSITIONS / (elapsed / 1e9), (double) allocated / TRANSITIONS);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
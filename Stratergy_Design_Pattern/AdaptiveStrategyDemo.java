@@ -0,0 +1,289 @@
+package Stratergy_Design_Pattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+// Strategy that takes an input and produces a result
+interface InputStrategy<T, R> {
+    R execute(T input);
+}
+
+// One row of AdaptiveContext.stats(): how one strategy has done on one input class
+final class StrategyStats {
+    final String inputClass;
+    final String strategy;
+    final long calls;
+    final long timedCalls;
+    final double meanNanos;
+    final boolean chosen;
+
+    StrategyStats(String inputClass, String strategy, long calls, long timedCalls, double meanNanos, boolean chosen) {
+        this.inputClass = inputClass;
+        this.strategy = strategy;
+        this.calls = calls;
+        this.timedCalls = timedCalls;
+        this.meanNanos = meanNanos;
+        this.chosen = chosen;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-12s %-14s calls=%-8d timed=%-6d mean=%,10.0fns%s",
+                inputClass, strategy, calls, timedCalls, meanNanos, chosen ? "  <- chosen" : "");
+    }
+}
+
+// Context that picks a strategy per call instead of running whichever was set last. Inputs are
+// grouped into classes by the power of two of their size; within each class every strategy is
+// timed a few times, then calls go to the fastest one, while a random 1 in exploreOneIn calls
+// still tries another strategy so the choice follows changes in their relative speed.
+class AdaptiveContext<T, R> {
+    private static final int CLASSES = 33;
+    private static final int WARM_UP_SAMPLES = 8;
+    // Outside warm-up and exploration only 1 in this many calls is timed
+    private static final int TIME_ONE_IN = 16;
+    // Weight of a new sample in the moving average
+    private static final double ALPHA = 0.1;
+
+    private final class InputClass {
+        final int index;
+        final LongAdder[] calls = new LongAdder[strategies.size()];
+        final long[] timedCalls = new long[strategies.size()];
+        final double[] meanNanos = new double[strategies.size()];
+        volatile int best;
+        // First strategy still warming up, or -1 once all have been timed enough
+        volatile int warming;
+
+        InputClass(int index) {
+            this.index = index;
+            for (int s = 0; s < calls.length; s++) {
+                calls[s] = new LongAdder();
+            }
+        }
+
+        synchronized void record(int strategy, long nanos) {
+            meanNanos[strategy] = timedCalls[strategy] == 0 ? nanos : meanNanos[strategy] + ALPHA * (nanos - meanNanos[strategy]);
+            timedCalls[strategy]++;
+            int nextWarming = -1;
+            int nextBest = 0;
+            for (int s = 0; s < meanNanos.length; s++) {
+                if (timedCalls[s] < WARM_UP_SAMPLES && nextWarming < 0) {
+                    nextWarming = s;
+                }
+                if (meanNanos[s] < meanNanos[nextBest]) {
+                    nextBest = s;
+                }
+            }
+            warming = nextWarming;
+            best = nextBest;
+        }
+    }
+
+    private final ToIntFunction<T> sizeOf;
+    private final int exploreOneIn;
+    private final List<String> names = new ArrayList<>();
+    private final List<InputStrategy<T, R>> strategies = new ArrayList<>();
+    private final AtomicReferenceArray<InputClass> classes = new AtomicReferenceArray<>(CLASSES);
+
+    public AdaptiveContext(ToIntFunction<T> sizeOf, int exploreOneIn) {
+        if (exploreOneIn < 2) {
+            throw new IllegalArgumentException("exploreOneIn must be at least 2: " + exploreOneIn);
+        }
+        this.sizeOf = sizeOf;
+        this.exploreOneIn = exploreOneIn;
+    }
+
+    // All strategies must be registered before the first call
+    public AdaptiveContext<T, R> register(String name, InputStrategy<T, R> strategy) {
+        if (started()) {
+            throw new IllegalStateException("Strategies must be registered before the first call");
+        }
+        names.add(name);
+        strategies.add(strategy);
+        return this;
+    }
+
+    public R performOperation(T input) {
+        InputClass inputClass = inputClass(sizeOf.applyAsInt(input));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int choice = inputClass.warming;
+        boolean timed = true;
+        if (choice < 0) {
+            if (random.nextInt(exploreOneIn) == 0) {
+                choice = random.nextInt(strategies.size());
+            } else {
+                choice = inputClass.best;
+                timed = random.nextInt(TIME_ONE_IN) == 0;
+            }
+        }
+        inputClass.calls[choice].increment();
+        InputStrategy<T, R> strategy = strategies.get(choice);
+        if (!timed) {
+            return strategy.execute(input);
+        }
+        long start = System.nanoTime();
+        R result = strategy.execute(input);
+        inputClass.record(choice, System.nanoTime() - start);
+        return result;
+    }
+
+    // Name of the strategy currently chosen for inputs of this size
+    public String choiceFor(int size) {
+        InputClass inputClass = classes.get(classOf(size));
+        return inputClass == null ? null : names.get(inputClass.best);
+    }
+
+    public List<StrategyStats> stats() {
+        List<StrategyStats> stats = new ArrayList<>();
+        for (int c = 0; c < CLASSES; c++) {
+            InputClass inputClass = classes.get(c);
+            if (inputClass == null) {
+                continue;
+            }
+            String label = c == 0 ? "0" : (1L << (c - 1)) + ".." + ((1L << c) - 1);
+            synchronized (inputClass) {
+                for (int s = 0; s < names.size(); s++) {
+                    stats.add(new StrategyStats(label, names.get(s), inputClass.calls[s].sum(), inputClass.timedCalls[s],
+                            inputClass.meanNanos[s], s == inputClass.best && inputClass.warming < 0));
+                }
+            }
+        }
+        return stats;
+    }
+
+    private InputClass inputClass(int size) {
+        int index = classOf(size);
+        InputClass inputClass = classes.get(index);
+        if (inputClass == null) {
+            if (strategies.isEmpty()) {
+                throw new IllegalStateException("No strategies registered");
+            }
+            classes.compareAndSet(index, null, new InputClass(index));
+            inputClass = classes.get(index);
+        }
+        return inputClass;
+    }
+
+    private boolean started() {
+        for (int c = 0; c < CLASSES; c++) {
+            if (classes.get(c) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int classOf(int size) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(size, 0));
+    }
+}
+
+// Compares an adaptive context with each fixed strategy on a mix of small and large inputs
+public class AdaptiveStrategyDemo {
+    private static final int CALLS = 30_000;
+    private static final int[] SIZES = {8, 64, 1_024};
+
+    public static void main(String[] args) {
+        InputStrategy<int[], Boolean> nestedLoops = AdaptiveStrategyDemo::hasDuplicateNested;
+        InputStrategy<int[], Boolean> hashSet = AdaptiveStrategyDemo::hasDuplicateHashed;
+        InputStrategy<int[], Boolean> sortedCopy = AdaptiveStrategyDemo::hasDuplicateSorted;
+
+        int[][] inputs = new int[CALLS][];
+        Random random = new Random(42);
+        for (int i = 0; i < CALLS; i++) {
+            int size = SIZES[random.nextInt(SIZES.length)];
+            int[] input = new int[size];
+            for (int j = 0; j < size; j++) {
+                input[j] = j * 7919; // distinct, so every strategy must examine the whole input
+            }
+            for (int j = size - 1; j > 0; j--) {
+                int k = random.nextInt(j + 1);
+                int swap = input[j];
+                input[j] = input[k];
+                input[k] = swap;
+            }
+            inputs[i] = input;
+        }
+
+        for (int round = 1; round <= 2; round++) {
+            boolean print = round == 2;
+            AdaptiveContext<int[], Boolean> adaptive = new AdaptiveContext<int[], Boolean>(input -> input.length, 256)
+                    .register("nested loops", nestedLoops)
+                    .register("hash set", hashSet)
+                    .register("sorted copy", sortedCopy);
+            if (print) {
+                System.out.printf("%-14s %12s%n", "strategy", "total (ms)");
+            }
+            run("nested loops", nestedLoops, inputs, print);
+            run("hash set", hashSet, inputs, print);
+            run("sorted copy", sortedCopy, inputs, print);
+            run("adaptive", adaptive::performOperation, inputs, print);
+            if (print) {
+                System.out.println();
+                for (int size : SIZES) {
+                    System.out.println("Size " + size + " -> " + adaptive.choiceFor(size));
+                }
+                System.out.println();
+                adaptive.stats().forEach(System.out::println);
+            }
+        }
+    }
+
+    private static void run(String name, InputStrategy<int[], Boolean> strategy, int[][] inputs, boolean print) {
+        int duplicates = 0;
+        long start = System.nanoTime();
+        for (int[] input : inputs) {
+            if (strategy.execute(input)) {
+                duplicates++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (duplicates != 0) {
+            throw new IllegalStateException(name + " found duplicates in distinct inputs");
+        }
+        if (print) {
+            System.out.printf("%-14s %12.1f%n", name, elapsed / 1e6);
+        }
+    }
+
+    // O(n^2) but allocation-free: fastest for small inputs
+    private static Boolean hasDuplicateNested(int[] input) {
+        for (int i = 0; i < input.length; i++) {
+            for (int j = i + 1; j < input.length; j++) {
+                if (input[i] == input[j]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Boolean hasDuplicateHashed(int[] input) {
+        Set<Integer> seen = new HashSet<>(input.length * 2);
+        for (int value : input) {
+            if (!seen.add(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Boolean hasDuplicateSorted(int[] input) {
+        int[] sorted = input.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
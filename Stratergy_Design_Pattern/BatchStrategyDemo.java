@@ -0,0 +1,162 @@
+package Stratergy_Design_Pattern;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Strategy over bulk data: execute handles input[from, to) and returns a partial result, and
+// merge combines the partial results of two adjacent ranges
+interface BatchStrategy<R> {
+    R execute(int[] input, int from, int to);
+
+    R merge(R left, R right);
+}
+
+// Batch counterpart of ConcreteStrategyA: sum of all values
+class ConcreteBatchStrategyA implements BatchStrategy<Long> {
+    @Override
+    public Long execute(int[] input, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += input[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public Long merge(Long left, Long right) {
+        return left + right;
+    }
+}
+
+// Batch counterpart of ConcreteStrategyB: histogram of values over 16 equal-width buckets
+// spanning the whole int range, from Integer.MIN_VALUE in bucket 0 to Integer.MAX_VALUE in bucket 15
+class ConcreteBatchStrategyB implements BatchStrategy<long[]> {
+    static final int BUCKETS = 16;
+
+    @Override
+    public long[] execute(int[] input, int from, int to) {
+        long[] histogram = new long[BUCKETS];
+        for (int i = from; i < to; i++) {
+            // Flipping the sign bit maps the int range onto unsigned order, so negatives are counted too
+            histogram[(input[i] ^ Integer.MIN_VALUE) >>> 28]++;
+        }
+        return histogram;
+    }
+
+    @Override
+    public long[] merge(long[] left, long[] right) {
+        for (int b = 0; b < BUCKETS; b++) {
+            left[b] += right[b];
+        }
+        return left;
+    }
+}
+
+// Runs a BatchStrategy over a whole array, splitting it in halves across a fork-join pool
+// until ranges are below the threshold. Each range gets its own partial result and results
+// are merged pairwise on the way back up, so workers never share an accumulator.
+class BatchStrategyExecutor {
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    public BatchStrategyExecutor(ForkJoinPool pool, int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    public <R> R execute(BatchStrategy<R> strategy, int[] input) {
+        if (input.length <= threshold || pool.getParallelism() == 1) {
+            return strategy.execute(input, 0, input.length);
+        }
+        return pool.invoke(new BatchTask<>(strategy, input, 0, input.length, threshold));
+    }
+
+    private static final class BatchTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final BatchStrategy<R> strategy;
+        private final int[] input;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        BatchTask(BatchStrategy<R> strategy, int[] input, int from, int to, int threshold) {
+            this.strategy = strategy;
+            this.input = input;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= threshold) {
+                return strategy.execute(input, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            BatchTask<R> left = new BatchTask<>(strategy, input, from, middle, threshold);
+            left.fork();
+            R right = new BatchTask<>(strategy, input, middle, to, threshold).compute();
+            return strategy.merge(left.join(), right);
+        }
+    }
+}
+
+// Checks the batch strategies against a sequential run and measures scaling with pool size
+public class BatchStrategyDemo {
+    private static final int SIZE = 20_000_000;
+    private static final int THRESHOLD = 1 << 16;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) {
+        int[] input = new int[SIZE];
+        Random random = new Random(42);
+        for (int i = 0; i < SIZE; i++) {
+            input[i] = random.nextInt();
+        }
+        ConcreteBatchStrategyA sum = new ConcreteBatchStrategyA();
+        ConcreteBatchStrategyB histogram = new ConcreteBatchStrategyB();
+        long expectedSum = sum.execute(input, 0, SIZE);
+        long[] expectedHistogram = histogram.execute(input, 0, SIZE);
+        System.out.println("Sum: " + expectedSum);
+        System.out.println("Histogram: " + Arrays.toString(expectedHistogram));
+
+        System.out.println();
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%12s %18s %18s%n", "parallelism", "A sum (M/s)", "B histogram (M/s)");
+        for (int parallelism : new int[] {1, 2, 4, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            BatchStrategyExecutor executor = new BatchStrategyExecutor(pool, THRESHOLD);
+            double sumRate = 0;
+            double histogramRate = 0;
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                for (int run = 0; run < RUNS; run++) {
+                    if (executor.execute(sum, input) != expectedSum) {
+                        throw new IllegalStateException("Parallel sum differs");
+                    }
+                }
+                sumRate = rate(System.nanoTime() - start);
+
+                start = System.nanoTime();
+                for (int run = 0; run < RUNS; run++) {
+                    if (!Arrays.equals(executor.execute(histogram, input), expectedHistogram)) {
+                        throw new IllegalStateException("Parallel histogram differs");
+                    }
+                }
+                histogramRate = rate(System.nanoTime() - start);
+            }
+            pool.shutdown();
+            System.out.printf("%12d %18.0f %18.0f%n", parallelism, sumRate, histogramRate);
+        }
+    }
+
+    private static double rate(long nanos) {
+        return (double) SIZE * RUNS / (nanos / 1e9) / 1e6;
+    }
+}
@@ -0,0 +1,317 @@
+package Stratergy_Design_Pattern;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Context with a volatile strategy field: a strategy set on one thread is fully visible to
+// every later performOperation call on other threads
+class VolatileContext {
+    private volatile Strategy strategy;
+
+    public VolatileContext(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    public void performOperation() {
+        strategy.execute();
+    }
+}
+
+// Context whose strategy is bound into its own MutableCallSite. Calling through a context held
+// in a static final field lets the JIT treat the bound strategy as a constant and inline its
+// execute(), however many other Strategy types the program uses. setStrategy relinks the call
+// site, which deoptimizes the compiled callers, and syncAll makes the new target visible to
+// all threads. Contexts are only created through of(), so the call site is only ever changed
+// by setStrategy.
+interface CallSiteContext {
+    static CallSiteContext of(Strategy strategy) {
+        return CallSiteLinker.bind(strategy);
+    }
+
+    void setStrategy(Strategy strategy);
+
+    Strategy getStrategy();
+
+    void performOperation();
+}
+
+// Holds the only CallSiteContext implementation. It is a record because the JIT trusts record
+// fields as truly final, which is what lets it fold the call site of a static final context;
+// it is private so that its constructor and accessors cannot be reached from outside.
+final class CallSiteLinker {
+    private static final MethodHandle EXECUTE;
+
+    static {
+        try {
+            EXECUTE = MethodHandles.lookup().findVirtual(Strategy.class, "execute", MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private CallSiteLinker() {
+    }
+
+    static CallSiteContext bind(Strategy strategy) {
+        MutableCallSite site = new MutableCallSite(EXECUTE.bindTo(strategy));
+        return new Bound(site, site.dynamicInvoker(), new AtomicReference<>(strategy));
+    }
+
+    private record Bound(MutableCallSite site, MethodHandle invoker, AtomicReference<Strategy> current)
+            implements CallSiteContext {
+        // current is written after the relink, so once getStrategy() returns the new strategy
+        // every later performOperation call runs it
+        @Override
+        public void setStrategy(Strategy strategy) {
+            synchronized (site) {
+                site.setTarget(EXECUTE.bindTo(strategy));
+                MutableCallSite.syncAll(new MutableCallSite[] {site});
+                current.set(strategy);
+            }
+        }
+
+        @Override
+        public Strategy getStrategy() {
+            return current.get();
+        }
+
+        @Override
+        public void performOperation() {
+            try {
+                invoker.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        // Each context is its own call site; comparing components would add nothing
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
+
+// Eight small strategies with distinct classes, so a shared call site can be made mono-, bi-
+// or megamorphic
+abstract class CountingStrategy implements Strategy {
+    long count;
+}
+
+class CountingStrategy1 extends CountingStrategy {
+    @Override
+    public void execute() {
+        count += 1;
+    }
+}
+
+class CountingStrategy2 extends CountingStrategy {
+    @Override
+    public void execute() {
+        count += 2;
+    }
+}
+
+class CountingStrategy3 extends CountingStrategy {
+    @Override
+    public void execute() {
+        count += 3;
+    }
+}
+
+class CountingStrategy4 extends CountingStrategy {
+    @Override
+    public void execute() {
+        count += 4;
+    }
+}
+
+class CountingStrategy5 extends CountingStrategy {
+    @Override
+    public void execute() {
+        count += 5;
+    }
+}
+
+class CountingStrategy6 extends CountingStrategy {
+    @Override
+    public void execute() {
+        count += 6;
+    }
+}
+
+class CountingStrategy7 extends CountingStrategy {
+    @Override
+    public void execute() {
+        count += 7;
+    }
+}
+
+class CountingStrategy8 extends CountingStrategy {
+    @Override
+    public void execute() {
+        count += 8;
+    }
+}
+
+// Shows a safe hot swap across threads, then measures calls through eight contexts whose
+// strategies span 1, 2 or 8 classes. Plain and volatile contexts share one execute() call
+// site inside performOperation, so its type profile degrades as more classes pass through;
+// each call-site context stays monomorphic.
+public class CallSiteStrategyDemo {
+    private static final int ITERATIONS = 20_000_000;
+    private static final int ROUNDS = 3;
+
+    private static final Context P1 = new Context(null), P2 = new Context(null), P3 = new Context(null), P4 = new Context(null);
+    private static final Context P5 = new Context(null), P6 = new Context(null), P7 = new Context(null), P8 = new Context(null);
+    private static final VolatileContext V1 = new VolatileContext(null), V2 = new VolatileContext(null);
+    private static final VolatileContext V3 = new VolatileContext(null), V4 = new VolatileContext(null);
+    private static final VolatileContext V5 = new VolatileContext(null), V6 = new VolatileContext(null);
+    private static final VolatileContext V7 = new VolatileContext(null), V8 = new VolatileContext(null);
+    private static final CallSiteContext C1 = CallSiteContext.of(new CountingStrategy1());
+    private static final CallSiteContext C2 = CallSiteContext.of(new CountingStrategy1());
+    private static final CallSiteContext C3 = CallSiteContext.of(new CountingStrategy1());
+    private static final CallSiteContext C4 = CallSiteContext.of(new CountingStrategy1());
+    private static final CallSiteContext C5 = CallSiteContext.of(new CountingStrategy1());
+    private static final CallSiteContext C6 = CallSiteContext.of(new CountingStrategy1());
+    private static final CallSiteContext C7 = CallSiteContext.of(new CountingStrategy1());
+    private static final CallSiteContext C8 = CallSiteContext.of(new CountingStrategy1());
+
+    private static volatile long sink;
+
+    public static void main(String[] args) throws InterruptedException {
+        hotSwap();
+
+        System.out.println();
+        System.out.printf("%-11s %16s %16s %16s%n", "strategies", "plain (ns)", "volatile (ns)", "call site (ns)");
+        // The 1-strategy run comes first so the shared profiles start monomorphic
+        for (int classes : new int[] {1, 2, 8}) {
+            CountingStrategy[] strategies = strategies(classes);
+            Context[] plain = {P1, P2, P3, P4, P5, P6, P7, P8};
+            VolatileContext[] volatiles = {V1, V2, V3, V4, V5, V6, V7, V8};
+            CallSiteContext[] callSites = {C1, C2, C3, C4, C5, C6, C7, C8};
+            for (int i = 0; i < 8; i++) {
+                plain[i].setStrategy(strategies[i]);
+                volatiles[i].setStrategy(strategies[i]);
+                callSites[i].setStrategy(strategies[i]);
+            }
+            long plainNanos = 0;
+            long volatileNanos = 0;
+            long callSiteNanos = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                plainNanos = time(CallSiteStrategyDemo::runPlain);
+                volatileNanos = time(CallSiteStrategyDemo::runVolatile);
+                callSiteNanos = time(CallSiteStrategyDemo::runCallSite);
+            }
+            long total = 0;
+            for (CountingStrategy strategy : strategies) {
+                total += strategy.count;
+            }
+            sink = total;
+            double calls = 8.0 * ITERATIONS;
+            System.out.printf("%-11d %16.2f %16.2f %16.2f%n", classes, plainNanos / calls, volatileNanos / calls, callSiteNanos / calls);
+        }
+    }
+
+    // A reader thread spins until it observes the strategy published by the main thread
+    private static void hotSwap() throws InterruptedException {
+        CountingStrategy first = new CountingStrategy1();
+        CountingStrategy second = new CountingStrategy2();
+        CallSiteContext context = CallSiteContext.of(first);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            started.countDown();
+            while (context.getStrategy() != second) {
+                context.performOperation();
+            }
+        });
+        reader.start();
+        started.await();
+        Thread.sleep(50);
+        context.setStrategy(second);
+        reader.join();
+        context.performOperation();
+        System.out.println("Swapped strategy after " + first.count + " calls; new strategy ran " + second.count / 2 + " time(s)");
+    }
+
+    private static CountingStrategy[] strategies(int classes) {
+        CountingStrategy[] strategies = new CountingStrategy[8];
+        for (int i = 0; i < 8; i++) {
+            switch (i % classes) {
+                case 0: strategies[i] = new CountingStrategy1(); break;
+                case 1: strategies[i] = new CountingStrategy2(); break;
+                case 2: strategies[i] = new CountingStrategy3(); break;
+                case 3: strategies[i] = new CountingStrategy4(); break;
+                case 4: strategies[i] = new CountingStrategy5(); break;
+                case 5: strategies[i] = new CountingStrategy6(); break;
+                case 6: strategies[i] = new CountingStrategy7(); break;
+                default: strategies[i] = new CountingStrategy8(); break;
+            }
+        }
+        return strategies;
+    }
+
+    private static long time(Runnable run) {
+        long start = System.nanoTime();
+        run.run();
+        return System.nanoTime() - start;
+    }
+
+    private static void runPlain() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            P1.performOperation();
+            P2.performOperation();
+            P3.performOperation();
+            P4.performOperation();
+            P5.performOperation();
+            P6.performOperation();
+            P7.performOperation();
+            P8.performOperation();
+        }
+    }
+
+    private static void runVolatile() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            V1.performOperation();
+            V2.performOperation();
+            V3.performOperation();
+            V4.performOperation();
+            V5.performOperation();
+            V6.performOperation();
+            V7.performOperation();
+            V8.performOperation();
+        }
+    }
+
+    private static void runCallSite() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            C1.performOperation();
+            C2.performOperation();
+            C3.performOperation();
+            C4.performOperation();
+            C5.performOperation();
+            C6.performOperation();
+            C7.performOperation();
+            C8.performOperation();
+        }
+    }
+}
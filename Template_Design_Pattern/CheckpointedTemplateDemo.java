@@ -0,0 +1,277 @@
+package Template_Design_Pattern;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+// Template whose steps survive a crash: after each step a compact record of the step number
+// and the subclass's state is appended to a checkpoint file. When templateMethod() is called
+// again after a failure it restores the last recorded state and continues with the next step
+// instead of starting over. The file is deleted once every step has completed.
+//
+// Record layout: int magic, int step, int length, byte[length] state, long CRC32 of
+// step, length and state. A torn or corrupt record at the end is ignored and cut off before
+// new records are appended, so they follow the last valid record.
+abstract class CheckpointedTemplate {
+    private static final int MAGIC = 0x54504c31; // "TPL1"
+    private static final int HEADER_BYTES = 12;
+    private static final int TRAILER_BYTES = 8;
+
+    private final Path checkpointFile;
+    private final boolean sync;
+    private int resumedFrom;
+    // End of the last valid record found by restore()
+    private long validBytes;
+    private int checkpoints;
+    private long checkpointNanos;
+
+    // checkpointFile may be null to disable checkpointing; sync forces each record to disk
+    protected CheckpointedTemplate(Path checkpointFile, boolean sync) {
+        this.checkpointFile = checkpointFile;
+        this.sync = sync;
+    }
+
+    protected abstract int stepCount();
+
+    protected abstract void runStep(int step);
+
+    // State needed by the steps after the current one
+    protected byte[] saveState() {
+        return new byte[0];
+    }
+
+    protected void restoreState(byte[] state) {
+    }
+
+    public final void templateMethod() throws IOException {
+        int next = 0;
+        validBytes = 0;
+        if (checkpointFile != null && Files.exists(checkpointFile)) {
+            next = restore();
+        }
+        resumedFrom = next;
+        try (FileChannel channel = checkpointFile == null ? null
+                : FileChannel.open(checkpointFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            if (channel != null) {
+                channel.truncate(validBytes);
+                channel.position(validBytes);
+            }
+            for (int step = next; step < stepCount(); step++) {
+                runStep(step);
+                if (channel != null) {
+                    long start = System.nanoTime();
+                    append(channel, step, saveState());
+                    checkpointNanos += System.nanoTime() - start;
+                    checkpoints++;
+                }
+            }
+        }
+        if (checkpointFile != null) {
+            Files.deleteIfExists(checkpointFile);
+        }
+    }
+
+    // Step the last templateMethod() call started from
+    public int resumedFrom() {
+        return resumedFrom;
+    }
+
+    public int checkpoints() {
+        return checkpoints;
+    }
+
+    public long checkpointNanos() {
+        return checkpointNanos;
+    }
+
+    private void append(FileChannel channel, int step, byte[] state) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + state.length + TRAILER_BYTES);
+        record.putInt(MAGIC).putInt(step).putInt(state.length).put(state);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, HEADER_BYTES - 4 + state.length);
+        record.putLong(crc.getValue());
+        record.flip();
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    // Returns the step after the last valid record, having restored that record's state, and
+    // sets validBytes to the end of that record
+    private int restore() throws IOException {
+        int lastStep = -1;
+        byte[] lastState = null;
+        long size = Files.size(checkpointFile);
+        long position = 0;
+        try (InputStream file = Files.newInputStream(checkpointFile);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            while (true) {
+                if (in.readInt() != MAGIC) {
+                    break;
+                }
+                int step = in.readInt();
+                int length = in.readInt();
+                // A corrupt length must not allocate more than the rest of the file could hold
+                if (length < 0 || length > size - position - HEADER_BYTES - TRAILER_BYTES
+                        || step < 0 || step >= stepCount()) {
+                    break;
+                }
+                byte[] state = new byte[length];
+                in.readFully(state);
+                long expected = in.readLong();
+                CRC32 crc = new CRC32();
+                crc.update(ByteBuffer.allocate(HEADER_BYTES - 4).putInt(step).putInt(length).array());
+                crc.update(state);
+                if (crc.getValue() != expected) {
+                    break;
+                }
+                lastStep = step;
+                lastState = state;
+                position += HEADER_BYTES + length + TRAILER_BYTES;
+                validBytes = position;
+            }
+        } catch (EOFException e) {
+            // Torn final record
+        }
+        if (lastState != null) {
+            restoreState(lastState);
+        }
+        return lastStep + 1;
+    }
+}
+
+// Long batch job in the shape of ConcreteClass1: each step does a slice of work and folds its
+// result into a running checksum, which is the state carried across a restart
+class CheckpointedBatchJob extends CheckpointedTemplate {
+    private final int steps;
+    private final long stepMillis;
+    private final int failAtStep;
+    private long checksum = 17;
+
+    CheckpointedBatchJob(Path checkpointFile, boolean sync, int steps, long stepMillis, int failAtStep) {
+        super(checkpointFile, sync);
+        this.steps = steps;
+        this.stepMillis = stepMillis;
+        this.failAtStep = failAtStep;
+    }
+
+    @Override
+    protected int stepCount() {
+        return steps;
+    }
+
+    @Override
+    protected void runStep(int step) {
+        if (step == failAtStep) {
+            throw new IllegalStateException("Injected failure at step " + step);
+        }
+        if (stepMillis > 0) {
+            try {
+                Thread.sleep(stepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted in step " + step, e);
+            }
+        }
+        checksum = checksum * 31 + step;
+    }
+
+    @Override
+    protected byte[] saveState() {
+        return ByteBuffer.allocate(Long.BYTES).putLong(checksum).array();
+    }
+
+    @Override
+    protected void restoreState(byte[] state) {
+        checksum = ByteBuffer.wrap(state).getLong();
+    }
+
+    long checksum() {
+        return checksum;
+    }
+}
+
+// Failure-injection run: a job fails part-way and is restarted, with and without checkpoints.
+// Then measures the cost of writing one checkpoint, with and without forcing it to disk.
+public class CheckpointedTemplateDemo {
+    private static final int STEPS = 10;
+    private static final long STEP_MILLIS = 50;
+    private static final int FAIL_AT = 7;
+    private static final int OVERHEAD_STEPS = 2_000;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("checkpoints");
+        Path file = directory.resolve("batch-job.ckpt");
+        try {
+            CheckpointedBatchJob reference = new CheckpointedBatchJob(null, false, STEPS, 0, -1);
+            reference.templateMethod();
+
+            long withCheckpoints = failAndRestart(file, reference.checksum());
+            long withoutCheckpoints = failAndRestart(null, reference.checksum());
+            tornRecord(file, reference.checksum());
+            System.out.printf("Restart with checkpoints:    %6.0f ms%n", withCheckpoints / 1e6);
+            System.out.printf("Restart without checkpoints: %6.0f ms%n", withoutCheckpoints / 1e6);
+            System.out.printf("Time saved by resuming:      %6.0f ms%n", (withoutCheckpoints - withCheckpoints) / 1e6);
+
+            System.out.println();
+            for (int round = 0; round < 2; round++) {
+                for (boolean sync : new boolean[] {false, true}) {
+                    CheckpointedBatchJob job = new CheckpointedBatchJob(file, sync, OVERHEAD_STEPS, 0, -1);
+                    job.templateMethod();
+                    if (round == 1) {
+                        System.out.printf("Checkpoint write (%-14s): %8.1f us%n", sync ? "forced to disk" : "page cache",
+                                job.checkpointNanos() / 1e3 / job.checkpoints());
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    // A crash mid-write leaves part of a record at the end of the file. The next run must append
+    // after the last valid record, or the run after that would stop reading at the torn bytes.
+    private static void tornRecord(Path file, long expectedChecksum) throws IOException {
+        for (int failAt : new int[] {4, 8}) {
+            try {
+                new CheckpointedBatchJob(file, false, STEPS, 0, failAt).templateMethod();
+            } catch (IllegalStateException e) {
+                System.out.println(e.getMessage());
+            }
+            Files.write(file, new byte[] {0x54, 0x50, 0x4c, 0x31, 0, 0, 0}, StandardOpenOption.APPEND);
+        }
+        CheckpointedBatchJob restarted = new CheckpointedBatchJob(file, false, STEPS, 0, -1);
+        restarted.templateMethod();
+        System.out.println("  after torn records, restarted from step " + restarted.resumedFrom() + ", checksum "
+                + (restarted.checksum() == expectedChecksum ? "matches" : "DIFFERS"));
+    }
+
+    // Runs the job until the injected failure, then runs a fresh instance to completion
+    private static long failAndRestart(Path file, long expectedChecksum) throws IOException {
+        long start = System.nanoTime();
+        try {
+            new CheckpointedBatchJob(file, true, STEPS, STEP_MILLIS, FAIL_AT).templateMethod();
+            throw new IllegalStateException("Expected the injected failure");
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+        CheckpointedBatchJob restarted = new CheckpointedBatchJob(file, true, STEPS, STEP_MILLIS, -1);
+        restarted.templateMethod();
+        long elapsed = System.nanoTime() - start;
+        System.out.println("  restarted from step " + restarted.resumedFrom() + ", checksum "
+                + (restarted.checksum() == expectedChecksum ? "matches" : "DIFFERS"));
+        return elapsed;
+    }
+}
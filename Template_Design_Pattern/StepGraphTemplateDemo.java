@@ -0,0 +1,293 @@
+package Template_Design_Pattern;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Timing of one step in the last run, relative to the start of the run
+final class StepTiming {
+    final String step;
+    final long startNanos;
+    final long durationNanos;
+
+    StepTiming(String step, long startNanos, long durationNanos) {
+        this.step = step;
+        this.startNanos = startNanos;
+        this.durationNanos = durationNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-10s start %6.1f ms, took %6.1f ms", step, startNanos / 1e6, durationNanos / 1e6);
+    }
+}
+
+// Template whose steps form a dependency graph instead of a fixed sequence. Subclasses declare
+// each step and the steps it depends on; templateMethod() starts a step as soon as all of its
+// dependencies have finished, so independent steps run concurrently, and a step always sees
+// everything its dependencies did. Dependencies must be declared first, so the graph has no cycles.
+// The graph is built on the first templateMethod() call, after the subclass is fully constructed.
+abstract class StepGraphTemplate {
+    private static final class Step {
+        final String name;
+        final Runnable action;
+        final List<Step> dependencies;
+        // Set when the step finished in the current run; a step skipped after a failure keeps false
+        boolean ran;
+        long startNanos;
+        long durationNanos;
+
+        Step(String name, Runnable action, List<Step> dependencies) {
+            this.name = name;
+            this.action = action;
+            this.dependencies = dependencies;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private boolean defining;
+    private boolean defined;
+    private List<String> criticalPath = Collections.emptyList();
+    private long criticalPathNanos;
+    private long totalNanos;
+
+    protected StepGraphTemplate(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    // Declares the steps by calling step(...) in dependency order; called once, by the first run
+    protected abstract void defineSteps();
+
+    protected final void step(String name, Runnable action, String... dependsOn) {
+        if (!defining) {
+            throw new IllegalStateException("Steps can only be declared from defineSteps()");
+        }
+        if (steps.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate step: " + name);
+        }
+        List<Step> dependencies = new ArrayList<>();
+        for (String dependency : dependsOn) {
+            Step step = steps.get(dependency);
+            if (step == null) {
+                throw new IllegalArgumentException("Step " + name + " depends on undeclared step " + dependency);
+            }
+            dependencies.add(step);
+        }
+        steps.put(name, new Step(name, action, dependencies));
+    }
+
+    // Runs every step once. If a step throws, steps depending on it are skipped and the
+    // exception is rethrown once all other steps have finished; timings() then lists only the
+    // steps that ran, and the critical path stays empty.
+    public final synchronized void templateMethod() {
+        defineOnce();
+        for (Step step : steps.values()) {
+            step.ran = false;
+            step.startNanos = 0;
+            step.durationNanos = 0;
+        }
+        criticalPath = Collections.emptyList();
+        criticalPathNanos = 0;
+        Map<Step, CompletableFuture<Void>> done = new LinkedHashMap<>();
+        long runStart = System.nanoTime();
+        for (Step step : steps.values()) {
+            CompletableFuture<?>[] dependencies = new CompletableFuture<?>[step.dependencies.size()];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = done.get(step.dependencies.get(i));
+            }
+            done.put(step, CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+                long start = System.nanoTime();
+                try {
+                    step.action.run();
+                } finally {
+                    step.startNanos = start - runStart;
+                    step.durationNanos = System.nanoTime() - start;
+                    step.ran = true;
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(done.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            totalNanos = System.nanoTime() - runStart;
+        }
+        computeCriticalPath();
+    }
+
+    public synchronized List<StepTiming> timings() {
+        List<StepTiming> timings = new ArrayList<>();
+        for (Step step : steps.values()) {
+            if (step.ran) {
+                timings.add(new StepTiming(step.name, step.startNanos, step.durationNanos));
+            }
+        }
+        return timings;
+    }
+
+    // The chain of dependent steps with the largest total duration: the run cannot be faster
+    public synchronized List<String> criticalPath() {
+        return criticalPath;
+    }
+
+    public synchronized long criticalPathNanos() {
+        return criticalPathNanos;
+    }
+
+    public synchronized long totalNanos() {
+        return totalNanos;
+    }
+
+    // A defineSteps() that throws leaves no steps behind, so the next run tries again
+    private void defineOnce() {
+        if (defined) {
+            return;
+        }
+        defining = true;
+        try {
+            defineSteps();
+            defined = true;
+        } finally {
+            defining = false;
+            if (!defined) {
+                steps.clear();
+            }
+        }
+    }
+
+    // Steps are stored in dependency order, so one pass finds the longest chain ending at each
+    private void computeCriticalPath() {
+        Map<Step, Long> longest = new LinkedHashMap<>();
+        Map<Step, Step> previous = new LinkedHashMap<>();
+        Step last = null;
+        for (Step step : steps.values()) {
+            long before = 0;
+            for (Step dependency : step.dependencies) {
+                if (longest.get(dependency) > before) {
+                    before = longest.get(dependency);
+                    previous.put(step, dependency);
+                }
+            }
+            longest.put(step, before + step.durationNanos);
+            if (last == null || longest.get(step) > longest.get(last)) {
+                last = step;
+            }
+        }
+        List<String> path = new ArrayList<>();
+        for (Step step = last; step != null; step = previous.get(step)) {
+            path.add(0, step.name);
+        }
+        criticalPath = Collections.unmodifiableList(path);
+        criticalPathNanos = last == null ? 0 : longest.get(last);
+    }
+}
+
+// ConcreteClass1's steps as a graph: step1 and step2 are independent and the common step3
+// needs both. Each step simulates waiting on I/O.
+class ConcurrentConcreteClass1 extends StepGraphTemplate {
+    ConcurrentConcreteClass1(ExecutorService executor) {
+        super(executor);
+    }
+
+    @Override
+    protected void defineSteps() {
+        step("step1", () -> work("ConcurrentConcreteClass1: Implementing Step 1", 60));
+        step("step2", () -> work("ConcurrentConcreteClass1: Implementing Step 2", 40));
+        step("step3", () -> work("Step 3: Common step implementation", 20), "step1", "step2");
+    }
+
+    static void work(String message, long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during: " + message, e);
+        }
+        System.out.println(message);
+    }
+}
+
+// A wider pipeline: three loads, two transforms that each need two loads, and a report
+class ReportPipeline extends StepGraphTemplate {
+    ReportPipeline(ExecutorService executor) {
+        super(executor);
+    }
+
+    @Override
+    protected void defineSteps() {
+        step("loadA", () -> ConcurrentConcreteClass1.work("  loaded A", 50));
+        step("loadB", () -> ConcurrentConcreteClass1.work("  loaded B", 80));
+        step("loadC", () -> ConcurrentConcreteClass1.work("  loaded C", 30));
+        step("joinAB", () -> ConcurrentConcreteClass1.work("  joined A and B", 40), "loadA", "loadB");
+        step("joinBC", () -> ConcurrentConcreteClass1.work("  joined B and C", 70), "loadB", "loadC");
+        step("report", () -> ConcurrentConcreteClass1.work("  wrote report", 20), "joinAB", "joinBC");
+    }
+}
+
+// Runs both graphs and compares wall-clock time with the sum of the step times, which is what
+// the sequential templateMethod() would take
+public class StepGraphTemplateDemo {
+    public static void main(String[] args) {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            run("ConcurrentConcreteClass1", new ConcurrentConcreteClass1(executor));
+            System.out.println();
+            run("ReportPipeline", new ReportPipeline(executor));
+            System.out.println();
+            failingRun(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // A failed run reports only the steps that ran, not timings left over from an earlier run
+    private static void failingRun(ExecutorService executor) {
+        boolean[] fail = {false};
+        StepGraphTemplate flaky = new StepGraphTemplate(executor) {
+            @Override
+            protected void defineSteps() {
+                step("load", () -> ConcurrentConcreteClass1.work("  loaded", 10));
+                step("transform", () -> {
+                    if (fail[0]) {
+                        throw new IllegalStateException("transform failed");
+                    }
+                    ConcurrentConcreteClass1.work("  transformed", 10);
+                }, "load");
+                step("report", () -> ConcurrentConcreteClass1.work("  reported", 10), "transform");
+            }
+        };
+        run("flaky graph", flaky);
+        fail[0] = true;
+        System.out.println("Executing template method for flaky graph again, with transform failing:");
+        try {
+            flaky.templateMethod();
+        } catch (IllegalStateException e) {
+            System.out.println("  failed: " + e.getMessage());
+        }
+        flaky.timings().forEach(timing -> System.out.println("  " + timing));
+        System.out.println("  critical path " + flaky.criticalPath());
+    }
+
+    private static void run(String name, StepGraphTemplate template) {
+        System.out.println("Executing template method for " + name + ":");
+        template.templateMethod();
+        long sequential = 0;
+        for (StepTiming timing : template.timings()) {
+            System.out.println("  " + timing);
+            sequential += timing.durationNanos;
+        }
+        System.out.printf("  wall clock %.1f ms (sequential %.1f ms), critical path %s = %.1f ms%n",
+                template.totalNanos() / 1e6, sequential / 1e6, template.criticalPath(), template.criticalPathNanos() / 1e6);
+    }
+}
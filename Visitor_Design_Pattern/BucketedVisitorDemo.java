@@ -0,0 +1,123 @@
+package Visitor_Design_Pattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Object structure that keeps elements bucketed by concrete type. accept() walks each bucket in
+// its own loop and calls the matching visit overload directly, so there is no Element.accept
+// call and every loop sees a single element type. Elements are visited grouped by type (all
+// ConcreteElementA first, then ConcreteElementB), each group in insertion order. Other Element
+// implementations are kept in a separate list and visited through accept() as usual.
+class BucketedObjectStructure {
+    private ConcreteElementA[] elementsA = new ConcreteElementA[16];
+    private int countA;
+    private ConcreteElementB[] elementsB = new ConcreteElementB[16];
+    private int countB;
+    private final List<Element> others = new ArrayList<>();
+
+    public void addElement(Element element) {
+        Class<?> type = element.getClass();
+        if (type == ConcreteElementA.class) {
+            if (countA == elementsA.length) {
+                elementsA = Arrays.copyOf(elementsA, countA * 2);
+            }
+            elementsA[countA++] = (ConcreteElementA) element;
+        } else if (type == ConcreteElementB.class) {
+            if (countB == elementsB.length) {
+                elementsB = Arrays.copyOf(elementsB, countB * 2);
+            }
+            elementsB[countB++] = (ConcreteElementB) element;
+        } else {
+            others.add(element);
+        }
+    }
+
+    public int size() {
+        return countA + countB + others.size();
+    }
+
+    public void accept(Visitor visitor) {
+        ConcreteElementA[] as = elementsA;
+        for (int i = 0, n = countA; i < n; i++) {
+            visitor.visit(as[i]);
+        }
+        ConcreteElementB[] bs = elementsB;
+        for (int i = 0, n = countB; i < n; i++) {
+            visitor.visit(bs[i]);
+        }
+        for (Element element : others) {
+            element.accept(visitor);
+        }
+    }
+}
+
+// Quiet visitor that counts visits per element type. It also folds in each element's hash
+// code, so every element is actually read and the loops cannot be reduced to a count.
+class CountingVisitor implements Visitor {
+    long visitedA;
+    long visitedB;
+    long checksum;
+
+    @Override
+    public void visit(ConcreteElementA element) {
+        visitedA++;
+        checksum += element.hashCode();
+    }
+
+    @Override
+    public void visit(ConcreteElementB element) {
+        visitedB++;
+        checksum -= element.hashCode();
+    }
+}
+
+// Compares traversal throughput of the double-dispatch ObjectStructure and the bucketed one
+// over the same 10M randomly interleaved elements
+public class BucketedVisitorDemo {
+    private static final int ELEMENTS = 10_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        ObjectStructure mixed = new ObjectStructure();
+        BucketedObjectStructure bucketed = new BucketedObjectStructure();
+        Random random = new Random(42);
+        long expectedA = 0;
+        for (int i = 0; i < ELEMENTS; i++) {
+            Element element;
+            if (random.nextBoolean()) {
+                element = new ConcreteElementA();
+                expectedA++;
+            } else {
+                element = new ConcreteElementB();
+            }
+            mixed.addElement(element);
+            bucketed.addElement(element);
+        }
+
+        System.out.printf("%-6s %24s %24s%n", "round", "double dispatch (M/s)", "bucketed (M/s)");
+        for (int round = 1; round <= ROUNDS; round++) {
+            CountingVisitor first = new CountingVisitor();
+            long start = System.nanoTime();
+            mixed.accept(first);
+            long doubleDispatch = System.nanoTime() - start;
+
+            CountingVisitor second = new CountingVisitor();
+            start = System.nanoTime();
+            bucketed.accept(second);
+            long bucketedNanos = System.nanoTime() - start;
+
+            if (first.visitedA != expectedA || second.visitedA != expectedA
+                    || first.visitedB != ELEMENTS - expectedA || second.visitedB != ELEMENTS - expectedA
+                    || first.checksum != second.checksum) {
+                throw new IllegalStateException("Visit counts differ");
+            }
+            System.out.printf("%-6d %24.0f %24.0f%n", round, rate(doubleDispatch), rate(bucketedNanos));
+        }
+    }
+
+    private static double rate(long nanos) {
+        return ELEMENTS / (nanos / 1e9) / 1e6;
+    }
+}
@@ -0,0 +1,249 @@
+package Visitor_Design_Pattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Visitor that produces a result. Each traversal of a range starts from newPartial(), the visit
+// methods fold elements into that mutable partial, and merge combines the partials of two
+// ranges, so ranges can be visited independently and in parallel.
+interface ResultVisitor<R> {
+    R newPartial();
+
+    void visit(ConcreteElementA element, R partial);
+
+    void visit(ConcreteElementB element, R partial);
+
+    // May update and return left; right is not used afterwards
+    R merge(R left, R right);
+}
+
+// Like ConcreteVisitor1, but counts the elements of each type: {A count, B count}
+class TypeCountVisitor implements ResultVisitor<long[]> {
+    @Override
+    public long[] newPartial() {
+        return new long[2];
+    }
+
+    @Override
+    public void visit(ConcreteElementA element, long[] partial) {
+        partial[0]++;
+    }
+
+    @Override
+    public void visit(ConcreteElementB element, long[] partial) {
+        partial[1]++;
+    }
+
+    @Override
+    public long[] merge(long[] left, long[] right) {
+        left[0] += right[0];
+        left[1] += right[1];
+        return left;
+    }
+}
+
+// Like ConcreteVisitor2, but sums the elements' hash codes: {sum}
+class HashSumVisitor implements ResultVisitor<long[]> {
+    @Override
+    public long[] newPartial() {
+        return new long[1];
+    }
+
+    @Override
+    public void visit(ConcreteElementA element, long[] partial) {
+        partial[0] += element.hashCode();
+    }
+
+    @Override
+    public void visit(ConcreteElementB element, long[] partial) {
+        partial[0] += 31L * element.hashCode();
+    }
+
+    @Override
+    public long[] merge(long[] left, long[] right) {
+        left[0] += right[0];
+        return left;
+    }
+}
+
+// Object structure for result visitors. Elements are only ever appended, which is what makes
+// the incremental mode possible. Like ObjectStructure it is not safe to add elements while
+// a traversal is running.
+class ResultObjectStructure {
+    private static final int SPLIT_THRESHOLD = 1 << 14;
+
+    private static final class Cached<R> {
+        int visited;
+        R total;
+    }
+
+    private final List<Element> elements = new ArrayList<>();
+    // Weak keys, so a visitor that is no longer used elsewhere drops its cached total with it.
+    // Visitors are keyed by equals, which the visitors here inherit from Object.
+    private final Map<ResultVisitor<?>, Cached<?>> cache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public void addElement(Element element) {
+        elements.add(element);
+    }
+
+    public int size() {
+        return elements.size();
+    }
+
+    public <R> R accept(ResultVisitor<R> visitor) {
+        return visitRange(visitor, elements, 0, elements.size());
+    }
+
+    // Splits the elements across the pool; each task visits its range into its own partial
+    public <R> R acceptParallel(ResultVisitor<R> visitor, ForkJoinPool pool) {
+        return pool.invoke(new VisitTask<>(visitor, elements, 0, elements.size()));
+    }
+
+    // Visits only the elements added since the previous incremental call with this visitor and
+    // merges them into the cached total. Returns a copy of the total, made with merge, so later
+    // calls do not change a result the caller already holds. Calls with the same visitor from
+    // several threads take turns.
+    public <R> R acceptIncremental(ResultVisitor<R> visitor) {
+        @SuppressWarnings("unchecked")
+        Cached<R> cached = (Cached<R>) cache.computeIfAbsent(visitor, v -> new Cached<>());
+        synchronized (cached) {
+            if (cached.total == null) {
+                cached.total = visitor.newPartial();
+            }
+            int size = elements.size();
+            if (cached.visited < size) {
+                cached.total = visitor.merge(cached.total, visitRange(visitor, elements, cached.visited, size));
+                cached.visited = size;
+            }
+            return visitor.merge(visitor.newPartial(), cached.total);
+        }
+    }
+
+    // Elements still dispatch through Element.accept; a small bridge Visitor forwards each
+    // visit to the result visitor together with the partial being filled
+    private static <R> R visitRange(ResultVisitor<R> visitor, List<Element> elements, int from, int to) {
+        R partial = visitor.newPartial();
+        Visitor bridge = new Visitor() {
+            @Override
+            public void visit(ConcreteElementA element) {
+                visitor.visit(element, partial);
+            }
+
+            @Override
+            public void visit(ConcreteElementB element) {
+                visitor.visit(element, partial);
+            }
+        };
+        for (int i = from; i < to; i++) {
+            elements.get(i).accept(bridge);
+        }
+        return partial;
+    }
+
+    private static final class VisitTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final ResultVisitor<R> visitor;
+        private final List<Element> elements;
+        private final int from;
+        private final int to;
+
+        VisitTask(ResultVisitor<R> visitor, List<Element> elements, int from, int to) {
+            this.visitor = visitor;
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                return visitRange(visitor, elements, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            VisitTask<R> left = new VisitTask<>(visitor, elements, from, middle);
+            left.fork();
+            R right = new VisitTask<>(visitor, elements, middle, to).compute();
+            return visitor.merge(left.join(), right);
+        }
+    }
+}
+
+// Measures parallel scaling for both visitors and the cost of an incremental update
+public class ResultVisitorDemo {
+    private static final int ELEMENTS = 10_000_000;
+    private static final int ADDED = 100_000;
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) {
+        ResultObjectStructure structure = new ResultObjectStructure();
+        Random random = new Random(42);
+        for (int i = 0; i < ELEMENTS; i++) {
+            structure.addElement(random.nextBoolean() ? new ConcreteElementA() : new ConcreteElementB());
+        }
+        TypeCountVisitor counts = new TypeCountVisitor();
+        HashSumVisitor hashes = new HashSumVisitor();
+        long[] expectedCounts = structure.accept(counts);
+        long[] expectedHashes = structure.accept(hashes);
+        System.out.println("Counts (A, B): " + Arrays.toString(expectedCounts));
+
+        System.out.println();
+        System.out.println("Available processors: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-12s %20s %20s%n", "parallelism", "TypeCount (M/s)", "HashSum (M/s)");
+        for (int parallelism : new int[] {1, 2, 4, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            double countRate = 0;
+            double hashRate = 0;
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                for (int run = 0; run < RUNS; run++) {
+                    check(structure.acceptParallel(counts, pool), expectedCounts);
+                }
+                countRate = rate(System.nanoTime() - start);
+                start = System.nanoTime();
+                for (int run = 0; run < RUNS; run++) {
+                    check(structure.acceptParallel(hashes, pool), expectedHashes);
+                }
+                hashRate = rate(System.nanoTime() - start);
+            }
+            pool.shutdown();
+            System.out.printf("%-12d %20.0f %20.0f%n", parallelism, countRate, hashRate);
+        }
+
+        System.out.println();
+        structure.acceptIncremental(counts);
+        for (int i = 0; i < ADDED; i++) {
+            structure.addElement(random.nextBoolean() ? new ConcreteElementA() : new ConcreteElementB());
+        }
+        long start = System.nanoTime();
+        long[] full = structure.accept(counts);
+        long fullNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        long[] incremental = structure.acceptIncremental(counts);
+        long incrementalNanos = System.nanoTime() - start;
+        check(incremental, full);
+        structure.addElement(new ConcreteElementA());
+        structure.acceptIncremental(counts);
+        // The earlier result is a copy, so the next incremental call left it unchanged
+        check(incremental, full);
+        System.out.printf("After adding %,d elements: full visit %.1f ms, incremental %.1f ms%n",
+                ADDED, fullNanos / 1e6, incrementalNanos / 1e6);
+    }
+
+    private static void check(long[] actual, long[] expected) {
+        if (!Arrays.equals(actual, expected)) {
+            throw new IllegalStateException(Arrays.toString(actual) + " != " + Arrays.toString(expected));
+        }
+    }
+
+    private static double rate(long nanos) {
+        return (double) ELEMENTS * RUNS / (nanos / 1e9) / 1e6;
+    }
+}